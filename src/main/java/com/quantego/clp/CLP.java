@@ -1,22 +1,33 @@
 package com.quantego.clp;
 
+import com.kenai.jffi.MemoryIO;
 import com.quantego.clp.CLPConstraint.TYPE;
 import jnr.ffi.Memory;
 import jnr.ffi.Pointer;
 import jnr.ffi.Runtime;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 /**
  * <p>Java interface for the CLP linear solver. The implementation provides a light-weight wrapper that 
  * creates as little overhead as possible. If no variables or constraints are referenced, the memory 
  * footprint in Java heap is negligible.</p>
  * 
- * <p>Chunks of a model are buffered in heap for model building before 
+ * <p>Chunks of a model are buffered in reusable direct memory for model building before 
  * being sent to the native lib. The size of the buffer can be set with {@link CLP#buffer(int)}. The buffer 
  * helps to formulate models in a row-by-row fashion, without bothering about possible performance bottlenecks. 
  * Models with millions of constraints can be generated quickly.</p>
@@ -28,6 +39,10 @@ import java.util.Map;
  * <p> For debugging a model, use {@link CLP#verbose(int)} to set the internal log level of CLP which will show some solution information
  * during the solution process. {@link CLP#toString()} returns the model as string in .lp format (Xpress style), 
  * and {@link CLP#printModel()} sends it to standard out in the same format.</p> 
+ * 
+ * <p>A model must not be accessed by several threads at the same time. Different models can be built and solved 
+ * concurrently, since the binding to the native lib is shared but holds no state. Use {@link CLPBatchSolver} 
+ * to solve many independent models on a pool of threads.</p>
  * @author Nils Loehndorf
  *
  */
@@ -35,6 +50,8 @@ public class CLP {
 	
 	static CLPNative NATIVE = NativeLoader.load();
 	static Runtime RUNTIME = Runtime.getSystemRuntime();
+	//minimum number of coefficient updates per parallel chunk
+	static final int UPDATE_CHUNK_SIZE = 1<<16;
 	
 	Pointer _model;
 	Pointer _solve;
@@ -46,11 +63,11 @@ public class CLP {
 	Pointer _colUpper;
 	Pointer _primal;
 	Pointer _dual;
-	int[] _starts;
-	int[] _index;
+	MatrixIndex _matrixIndex = new MatrixIndex();
 	
 	Map<Integer,String> _varNames = new HashMap<>();
 	Map<Integer,String> _ctrNames = new HashMap<>();
+	TreeMap<Integer,CLPVariableBlock> _varBlocks = new TreeMap<>();
 	int _numCols;
 	int _numRows;
 	int _numElements;
@@ -59,12 +76,47 @@ public class CLP {
 	double _offset;
 	int _bufferSize = 100000;
 	double _smallestElement = 1.e-20;
+	//reusable arrays for bulk transfers of blocks
+	double[][] _scratch = {new double[0], new double[0]};
 	int _numNativeCols;
 	int _numNativeRows;
+	int _structureVersion;
+	int _fingerprintVersion = -1;
+	long _patternHash;
+	CLPBasisCache _basisCache;
+	//changes since the last solve
+	static final int BOUNDS_CHANGED = 1;
+	static final int OBJECTIVE_CHANGED = 2;
+	static final int MATRIX_CHANGED = 4;
+	int _changes;
+	//changes that may happen through writable views at any time until the structure version changes
+	int _viewChanges;
+	int _viewVersion = -1;
+	boolean _optimal;
+	ALGORITHM _lastAlgorithm;
 	ColBuffer _colBuffer = new ColBuffer();
 	RowBuffer _rowBuffer = new RowBuffer();
 	QuadraticObjective _qobj;
 	ALGORITHM _algorithm;
+	boolean _presolve = true;
+	double _maxSeconds = Double.NaN;
+	//number of the status message that the simplex issues after every refactorization
+	static final int STATUS_MESSAGE = 6;
+	CLPProgressListener _listener;
+	CLPNative.Callback _callback;
+	//native model on which the callback is registered
+	Pointer _callbackModel;
+	int _progressStride;
+	int _lastProgress;
+	RuntimeException _listenerFailure;
+	//iteration limit of the user while a running solve is being stopped
+	final Object _stopLock = new Object();
+	boolean _stopping;
+	int _userMaxIterations;
+	CLPSolverConfig _raceWinner;
+	CLPSolverConfig _config;
+	CLPAutotuner _autotuner;
+	int _tunedVersion = -1;
 	
 	/**
 	 * Create an new model instance.
@@ -72,6 +124,10 @@ public class CLP {
 	public CLP () {
 		_model = init();
 	}
+	
+	private CLP(Pointer model) {
+		_model = model;
+	}
 
 	public static CLP createFromMPS(File f) {
 		// Make BridJ Pointer to file
@@ -79,6 +135,7 @@ public class CLP {
 		// Read MPS
 		CLP clp = new CLP();
 		NATIVE.Clp_readMps(clp._model, path, 1, 0);
+		clp.readNativeModel();
 
 		// Explicitly release manually allocated memory to be on the safe side
 		// This is normally freed by finalize method from BridJ
@@ -95,7 +152,7 @@ public class CLP {
 	}
 		
 	private void flushBuffers() {
-		NATIVE.Clp_setObjectiveOffset(_model, (_maximize?1:-1)*_offset);
+		NATIVE.Clp_setObjectiveOffset(_model, -_offset);
 		if (_colBuffer.size()>0)
 			addCols();
 		if (_numRows == 0)
@@ -107,79 +164,73 @@ public class CLP {
 	}
 	
 	private void addRows() {
-		NATIVE.Clp_addRows(_model, _rowBuffer.size(),
-				arrayToPointer(_rowBuffer.lower()),
-				arrayToPointer(_rowBuffer.upper()),
-				arrayToPointer(_rowBuffer.starts()),
-				arrayToPointer(_rowBuffer.columns()),
-				arrayToPointer(_rowBuffer.elements()));
-		_numElements += _rowBuffer._elements.size();
+		addNativeRows(_rowBuffer.size(), _rowBuffer.numElements(),
+				_rowBuffer._lower,
+				_rowBuffer._upper,
+				_rowBuffer._starts,
+				_rowBuffer._columns,
+				_rowBuffer._elements);
+		_rowBuffer.clear();
+	}
+	
+	private void addNativeRows(int size, int numElements, Pointer lower, Pointer upper, Pointer starts, Pointer columns, Pointer elements) {
+		_changes |= BOUNDS_CHANGED;
+		NATIVE.Clp_addRows(_model, size, lower, upper, starts, columns, elements);
+		_numElements += numElements;
 		_elements = NATIVE.Clp_getElements(_model);
+		//restore infinite bounds which are truncated by the native lib
 		_rowLower = NATIVE.Clp_getRowLower(_model);
-		for (int i=0; i<_rowBuffer.size(); i++) {
-			if (_rowBuffer._lower.get(i)==Double.NEGATIVE_INFINITY)
-				_rowLower.putDouble((i+_numNativeRows)*Double.BYTES,Double.NEGATIVE_INFINITY);
-		}
+		lower.transferTo(0, _rowLower, _numNativeRows*Double.BYTES, size*Double.BYTES);
 		_rowUpper = NATIVE.Clp_getRowUpper(_model);
-		for (int i=0; i<_rowBuffer.size(); i++) {
-			if (_rowBuffer._upper.get(i)==Double.POSITIVE_INFINITY)
-				_rowUpper.putDouble((i+_numNativeRows)*Double.BYTES,Double.POSITIVE_INFINITY);
-		}
-		_rowBuffer = new RowBuffer();
+		upper.transferTo(0, _rowUpper, _numNativeRows*Double.BYTES, size*Double.BYTES);
 		_dual = NATIVE.Clp_dualRowSolution(_model);
-		_numNativeRows = _numRows;
-		_index = null;
-		_starts = null;
-	}
-	
-	private int[] getIndex() {
-		if (_index==null) {
-			_index = new int[_numElements];
-			NATIVE.Clp_getIndices(_model).get(0,_index,0,_numElements);
-		}
-		return _index;
-		
+		_numNativeRows += size;
+		_structureVersion++;
 	}
 	
-	private int[] getStarts() {
-		if (_starts==null) {
-			_starts = new int[_numCols + 1];
-			NATIVE.Clp_getVectorStarts(_model).get(0,_starts,0,_numCols + 1);
-		}
-		return _starts;
+	/**
+	 * @return position index of the native constraint matrix, updated for rows and columns appended since the last call
+	 */
+	MatrixIndex getMatrixIndex() {
+		_matrixIndex.update(_model, _numNativeCols, _numNativeRows);
+		return _matrixIndex;
 	}
 	
 	private void addCols() {
+		_changes |= OBJECTIVE_CHANGED;
+		int size = _colBuffer.size();
 		NATIVE.Clp_resize(_model, _numNativeRows, _numCols);
 		_obj = NATIVE.Clp_getObjCoefficients(_model);
 		_colLower = NATIVE.Clp_getColLower(_model);
 		_colUpper = NATIVE.Clp_getColUpper(_model);
-		for (Integer index : _colBuffer.objectives.keySet())
-			_obj.putDouble(index*Double.BYTES, _colBuffer.objectives.get(index));
-		for (Integer index : _colBuffer.lower.keySet())
-			_colLower.putDouble(index*Double.BYTES, _colBuffer.lower.get(index));
-		for (Integer index : _colBuffer.upper.keySet())
-			_colUpper.putDouble(index*Double.BYTES, _colBuffer.upper.get(index));
-		_colBuffer = new ColBuffer();
+		_obj.put(_numNativeCols*Double.BYTES, _colBuffer._objectives, 0, size);
+		_colLower.put(_numNativeCols*Double.BYTES, _colBuffer._lower, 0, size);
+		_colUpper.put(_numNativeCols*Double.BYTES, _colBuffer._upper, 0, size);
+		_colBuffer.clear();
 		_numNativeCols = _numCols;
+		_structureVersion++;
 		_primal = NATIVE.Clp_primalColumnSolution(_model);
+		//resizing may reallocate the native matrix and row arrays as well
+		_elements = NATIVE.Clp_getElements(_model);
+		_dual = NATIVE.Clp_dualRowSolution(_model);
 	} 
 	
-	private void neg() {
+	private void flushColsAndRows() {
 		if (_colBuffer.size()>0)
 			addCols();
 		if (_rowBuffer.size()>0)
 			addRows();
-		for (int col=0; col<_numCols; col++) 
-			_obj.putDouble(col*Double.BYTES, -_obj.getDouble(col*Double.BYTES));
-		if (_qobj != null)
-			_qobj.neg();
 	}
 	
 	String getVariableName(int index) {
 		String name = _varNames.get(index);
-		if (name==null)
-			name = "x_"+index;
+		if (name==null) {
+			Map.Entry<Integer,CLPVariableBlock> block = _varBlocks.floorEntry(index);
+			if (block!=null && index < block.getKey()+block.getValue()._size)
+				name = block.getValue()._name+"_"+(index-block.getKey());
+			else
+				name = "x_"+index;
+		}
 		return name;
 	}
 	
@@ -207,14 +258,22 @@ public class CLP {
 		if (!new File(filename).canRead())
 			throw new IOException(String.format("File '%s' does not exist or cannot be read.",filename));
 		NATIVE.Clp_restoreModel(_model, filename);
+		readNativeModel();
+	}
+	
+	/**
+	 * Update all references to the native model after it has been replaced as a whole.
+	 */
+	void readNativeModel() {
 		_rowLower = NATIVE.Clp_getRowLower(_model);
 		_rowUpper = NATIVE.Clp_getRowUpper(_model);
 		_colLower = NATIVE.Clp_getColLower(_model);
 		_colUpper = NATIVE.Clp_getColUpper(_model);
 		_elements = NATIVE.Clp_getElements(_model);
 		_maximize = NATIVE.Clp_getObjSense(_model) == -1;
-		_index = null;
-		_starts = null;
+		_optimal = false;
+		_matrixIndex = new MatrixIndex();
+		_structureVersion++;
 		_dual = NATIVE.Clp_dualRowSolution(_model);
 		_obj = NATIVE.Clp_getObjCoefficients(_model);
 		_primal = NATIVE.Clp_primalColumnSolution(_model);
@@ -233,7 +292,7 @@ public class CLP {
 	public double getDualSolution(CLPConstraint constraint) {
 		if (constraint._index >= _numNativeRows) 
 			flushBuffers();
-		return _maximize ? -_dual.getDouble(constraint._index*Double.BYTES) : _dual.getDouble(constraint._index*Double.BYTES);
+		return _dual.getDouble(constraint._index*Double.BYTES);
 	}
 	
 	/**
@@ -254,13 +313,15 @@ public class CLP {
 	 * @param ub
 	 */
 	public void setVariableBounds(CLPVariable variable, double lb, double ub) {
+		//bounds of appended variables do not affect the basis
 		if (variable._index < _numNativeCols) {
+			_changes |= BOUNDS_CHANGED;
 			_colLower.putDouble(variable._index*Double.BYTES,lb);
 			_colUpper.putDouble(variable._index*Double.BYTES,ub);
 		}
 		else {
-			_colBuffer.lower.put(variable._index, lb);
-			_colBuffer.upper.put(variable._index, ub);
+			_colBuffer._lower[variable._index-_numNativeCols] = lb;
+			_colBuffer._upper[variable._index-_numNativeCols] = ub;
 		}
 	}
 	
@@ -271,10 +332,12 @@ public class CLP {
 	 */
 	public void setVariableLowerBound(CLPVariable variable, double value) {
 		value = checkValue(value);
-		if (variable._index < _numNativeCols)
+		if (variable._index < _numNativeCols) {
+			_changes |= BOUNDS_CHANGED;
 			_colLower.putDouble(variable._index*Double.BYTES,value);
+		}
 		else
-			_colBuffer.lower.put(variable._index, value);
+			_colBuffer._lower[variable._index-_numNativeCols] = value;
 	}
 	
 	/**
@@ -284,10 +347,12 @@ public class CLP {
 	 */
 	public void setVariableUpperBound(CLPVariable variable, double value) {
 		value = checkValue(value);
-		if (variable._index < _numNativeCols)
+		if (variable._index < _numNativeCols) {
+			_changes |= BOUNDS_CHANGED;
 			_colUpper.putDouble(variable._index*Double.BYTES,value);
+		}
 		else
-			_colBuffer.upper.put(variable._index, value);
+			_colBuffer._upper[variable._index-_numNativeCols] = value;
 	}
 	
 	/**
@@ -307,27 +372,121 @@ public class CLP {
 	 */
 	public void setConstraintCoefficient(CLPConstraint constraint, CLPVariable variable, double value) {
 		if (constraint._index < _numNativeRows) {
-			int[] index = getIndex();
-			int[] starts = getStarts();
-			int pos = starts[variable._index];
-			int end = starts[variable._index+1];
-			while(index[pos++]!=constraint._index) {
-				if (pos>=end)
-					throw new IllegalStateException(String.format("Constraint %s does not contain variable %s. Coefficient not set.",constraint.toString(),variable.toString()));
-			}
+			int pos = getMatrixIndex().position(constraint._index, variable._index);
+			if (pos<0)
+				throw new IllegalStateException(String.format("Constraint %s does not contain variable %s. Coefficient not set.",constraint.toString(),variable.toString()));
+			//coefficients of buffered rows are sent to the native lib together with the rows
+			_changes |= MATRIX_CHANGED;
 			value = checkValue(value);
-			_elements.putDouble((pos-1)*Double.BYTES,value);
+			_elements.putDouble(pos*Double.BYTES,value);
 		}
 		else
-			_rowBuffer.setElement(constraint._index,variable._index, value);
+			_rowBuffer.setElement(constraint._index-_numNativeRows,variable._index, value);
 	}
 	
-	private double checkValue(double value) {
+	/**
+	 * Update many coefficients of the constraint matrix at once. Buffered variables and constraints are flushed first. 
+	 * The updates are grouped by column, their positions in the native matrix are resolved in one pass over the 
+	 * column index, in parallel for large batches, and the coefficients are written in bulk. If a coefficient is updated 
+	 * more than once, the last value counts. No coefficient is updated if one of the constraints does not contain the 
+	 * respective variable.
+	 * @param rows constraint indices
+	 * @param cols variable indices
+	 * @param values new coefficients
+	 * @return builder
+	 */
+	public CLP updateCoefficients(final int[] rows, final int[] cols, double[] values) {
+		int size = rows.length;
+		if (cols.length!=size || values.length!=size) throw new IllegalArgumentException("Arrays of unequal size.");
+		flushColsAndRows();
+		for (int i=0; i<size; i++) {
+			checkRow(rows[i]);
+			checkColumn(cols[i]);
+		}
+		final MatrixIndex matrix = getMatrixIndex();
+		//stable counting sort by column
+		int[] next = new int[_numCols+1];
+		for (int col : cols)
+			next[col+1]++;
+		for (int col=0; col<_numCols; col++)
+			next[col+1] += next[col];
+		final int[] order = new int[size];
+		for (int i=0; i<size; i++)
+			order[next[cols[i]]++] = i;
+		final int[] positions = new int[size];
+		final int numChunks = Math.max(1, Math.min(4*java.lang.Runtime.getRuntime().availableProcessors(), size/UPDATE_CHUNK_SIZE));
+		IntStream.range(0, numChunks).parallel().forEach(c -> {
+			for (int k=(int) ((long) size*c/numChunks); k<(int) ((long) size*(c+1)/numChunks); k++)
+				positions[k] = matrix.position(rows[order[k]], cols[order[k]]);
+		});
+		for (int k=0; k<size; k++)
+			if (positions[k]<0)
+				throw new IllegalStateException(String.format("Constraint %s does not contain variable %s. Coefficients not updated.",
+						getConstraintName(rows[order[k]]),getVariableName(cols[order[k]])));
+		_changes |= MATRIX_CHANGED;
+		if (size > matrix._nativeSize/8) {
+			double[] elements = new double[matrix._nativeSize];
+			_elements.get(0, elements, 0, matrix._nativeSize);
+			for (int k=0; k<size; k++)
+				elements[positions[k]] = checkValue(values[order[k]]);
+			_elements.put(0, elements, 0, matrix._nativeSize);
+		}
+		else
+			for (int k=0; k<size; k++)
+				_elements.putDouble(positions[k]*Double.BYTES, checkValue(values[order[k]]));
+		return this;
+	}
+	
+	/**
+	 * Update many coefficients of the constraint matrix at once with constraints and variables given by their position 
+	 * in a block. See {@link CLP#updateCoefficients(int[], int[], double[])}.
+	 * @param constraints block of constraints
+	 * @param rows positions in the block of constraints
+	 * @param variables block of variables
+	 * @param cols positions in the block of variables
+	 * @param values new coefficients
+	 * @return builder
+	 */
+	public CLP updateCoefficients(CLPConstraintBlock constraints, int[] rows, CLPVariableBlock variables, int[] cols, double[] values) {
+		if (cols.length!=rows.length) throw new IllegalArgumentException("Arrays of unequal size.");
+		int[] rowIndex = new int[rows.length];
+		int[] colIndex = new int[cols.length];
+		for (int i=0; i<rows.length; i++) {
+			rowIndex[i] = constraints.getIndex(rows[i]);
+			colIndex[i] = variables.getIndex(cols[i]);
+		}
+		return updateCoefficients(rowIndex, colIndex, values);
+	}
+	
+	double checkValue(double value) {
 		if (Math.abs(value)>=_smallestElement)
 			return value;
 		return 0.;
 	}
 	
+	/**
+	 * @param slot index of the reusable array
+	 * @param length minimum length
+	 * @return a reusable array of at least the given length
+	 */
+	double[] scratch(int slot, int length) {
+		if (_scratch[slot].length < length)
+			_scratch[slot] = new double[length];
+		return _scratch[slot];
+	}
+	
+	/**
+	 * @param values
+	 * @param slot index of the reusable array
+	 * @return the values as returned by {@link #checkValue(double)} in a reusable array
+	 */
+	double[] checkValues(double[] values, int slot) {
+		double[] checked = scratch(slot, values.length);
+		for (int i=0; i<values.length; i++)
+			checked[i] = checkValue(values[i]);
+		return checked;
+	}
+	
 	/**
 	 * Set constraint bounds. See {@link CLPConstraint#setRhs(double)}.
 	 * @param constraint
@@ -337,14 +496,15 @@ public class CLP {
 	public void setConstraintBounds(CLPConstraint constraint, double lb, double ub) {
 		lb = checkValue(lb);
 		ub = checkValue(ub);
+		//bounds of buffered constraints are sent to the native lib together with the constraints
 		if (constraint._index < _numNativeRows) {
+			_changes |= BOUNDS_CHANGED;
 			_rowLower.putDouble(constraint._index*Double.BYTES,lb);
 			_rowUpper.putDouble(constraint._index*Double.BYTES,ub);
 		}
 		else {
-			_rowBuffer._lower.set(constraint._index,lb);
-			_rowBuffer._upper.set(constraint._index,ub);
-			
+			_rowBuffer.setLower(constraint._index-_numNativeRows,lb);
+			_rowBuffer.setUpper(constraint._index-_numNativeRows,ub);
 		}
 	}
 	
@@ -355,10 +515,12 @@ public class CLP {
 	 */
 	public void setConstraintLowerBound(CLPConstraint constraint, double value) {
 		value = checkValue(value);
-		if (constraint._index < _numNativeRows)
+		if (constraint._index < _numNativeRows) {
+			_changes |= BOUNDS_CHANGED;
 			_rowLower.putDouble(constraint._index*Double.BYTES,value);
+		}
 		else 
-			_rowBuffer._lower.set(constraint._index,value);
+			_rowBuffer.setLower(constraint._index-_numNativeRows,value);
 	}
 	
 	/**
@@ -368,10 +530,12 @@ public class CLP {
 	 */
 	public void setConstraintUpperBound(CLPConstraint constraint, double value) {
 		value = checkValue(value);
-		if (constraint._index < _numNativeRows) 
+		if (constraint._index < _numNativeRows) {
+			_changes |= BOUNDS_CHANGED;
 			_rowUpper.putDouble(constraint._index*Double.BYTES,value);
+		}
 		else 
-			_rowBuffer._upper.set(constraint._index,value);
+			_rowBuffer.setUpper(constraint._index-_numNativeRows,value);
 			
 	}
 	
@@ -410,24 +574,25 @@ public class CLP {
 	}
 	
 	/**
-	 * Solve as maximization problem.
+	 * Solve as maximization problem. The objective sense is passed to the native lib, 
+	 * so the objective function and a previous basis remain unchanged.
 	 * @return builder
 	 */
 	public CLP maximization() {
-		if (!_maximize)
-			neg();
+		_changes |= OBJECTIVE_CHANGED;
 		_maximize = true;
+		NATIVE.Clp_setOptimizationDirection(_model, -1);
 		return this;
 	}
 	
 	/**
-	 * Solve as maximization problem.
+	 * Solve as minimization problem. See {@link CLP#maximization()}.
 	 * @return builder
 	 */
 	public CLP minimization() {
-		if (_maximize)
-			neg();
+		_changes |= OBJECTIVE_CHANGED;
 		_maximize = false;
+		NATIVE.Clp_setOptimizationDirection(_model, 1);
 		return this;
 	}
 	
@@ -442,6 +607,389 @@ public class CLP {
 		return new CLPVariable(this, _numCols++);
 	}
 	
+	CLPVariableBlock addVariableBlock(int size, double lb, double ub, double obj, double qobj) {
+		int offset = _numCols;
+		_colBuffer.addCols(size, lb, ub, checkValue(obj));
+		_numCols += size;
+		if (qobj!=0)
+			for (int i=offset; i<_numCols; i++)
+				setQuadraticObjectiveCoefficient(i, qobj);
+		if (_colBuffer.size()>=_bufferSize)
+			addCols();
+		return new CLPVariableBlock(this, offset, size);
+	}
+	
+	void setVariableLowerBounds(int offset, double[] values, int from, int length) {
+		if (offset < _numNativeCols)
+			_changes |= BOUNDS_CHANGED;
+		putColumnValues(_colLower, _colBuffer._lower, offset, values, from, length);
+	}
+	
+	void setVariableUpperBounds(int offset, double[] values, int from, int length) {
+		if (offset < _numNativeCols)
+			_changes |= BOUNDS_CHANGED;
+		putColumnValues(_colUpper, _colBuffer._upper, offset, values, from, length);
+	}
+	
+	void setObjectiveCoefficients(int offset, double[] values, int from, int length) {
+		_changes |= OBJECTIVE_CHANGED;
+		putColumnValues(_obj, _colBuffer._objectives, offset, values, from, length);
+	}
+	
+	/**
+	 * Write a range of column values to native memory for native columns and to the column buffer for the remaining ones.
+	 */
+	private void putColumnValues(Pointer pointer, double[] buffer, int offset, double[] values, int from, int length) {
+		if (offset<0 || offset+length>_numCols)
+			throw new IndexOutOfBoundsException(String.format("Variable range [%d,%d) is out of range.",offset,offset+length));
+		int numNative = Math.max(0, Math.min(length, _numNativeCols-offset));
+		if (numNative>0)
+			pointer.put(offset*Double.BYTES, values, from, numNative);
+		if (numNative<length)
+			System.arraycopy(values, from+numNative, buffer, offset+numNative-_numNativeCols, length-numNative);
+	}
+	
+	void getVariableBounds(int offset, double[] lower, double[] upper, int from, int length) {
+		if (offset<0 || offset+length>_numCols)
+			throw new IndexOutOfBoundsException(String.format("Variable range [%d,%d) is out of range.",offset,offset+length));
+		int numNative = Math.max(0, Math.min(length, _numNativeCols-offset));
+		if (numNative>0) {
+			_colLower.get(offset*Double.BYTES, lower, from, numNative);
+			_colUpper.get(offset*Double.BYTES, upper, from, numNative);
+		}
+		if (numNative<length) {
+			System.arraycopy(_colBuffer._lower, offset+numNative-_numNativeCols, lower, from+numNative, length-numNative);
+			System.arraycopy(_colBuffer._upper, offset+numNative-_numNativeCols, upper, from+numNative, length-numNative);
+		}
+	}
+	
+	void getSolution(int offset, double[] out, int from, int length) {
+		if (offset<0 || offset+length>_numCols)
+			throw new IndexOutOfBoundsException(String.format("Variable range [%d,%d) is out of range.",offset,offset+length));
+		if (offset+length > _numNativeCols)
+			flushBuffers();
+		_primal.get(offset*Double.BYTES, out, from, length);
+	}
+	
+	void setConstraintBounds(int offset, double[] lower, double[] upper, int from, int length) {
+		if (offset<0 || offset+length>_numRows)
+			throw new IndexOutOfBoundsException(String.format("Constraint range [%d,%d) is out of range.",offset,offset+length));
+		_changes |= BOUNDS_CHANGED;
+		int numNative = Math.max(0, Math.min(length, _numNativeRows-offset));
+		if (numNative>0) {
+			_rowLower.put(offset*Double.BYTES, lower, from, numNative);
+			_rowUpper.put(offset*Double.BYTES, upper, from, numNative);
+		}
+		if (numNative<length) {
+			int row = offset+numNative-_numNativeRows;
+			_rowBuffer._lower.put(row*Double.BYTES, lower, from+numNative, length-numNative);
+			_rowBuffer._upper.put(row*Double.BYTES, upper, from+numNative, length-numNative);
+		}
+	}
+	
+	void getConstraintBounds(int offset, double[] lower, double[] upper, int from, int length) {
+		if (offset<0 || offset+length>_numRows)
+			throw new IndexOutOfBoundsException(String.format("Constraint range [%d,%d) is out of range.",offset,offset+length));
+		int numNative = Math.max(0, Math.min(length, _numNativeRows-offset));
+		if (numNative>0) {
+			_rowLower.get(offset*Double.BYTES, lower, from, numNative);
+			_rowUpper.get(offset*Double.BYTES, upper, from, numNative);
+		}
+		if (numNative<length) {
+			int row = offset+numNative-_numNativeRows;
+			_rowBuffer._lower.get(row*Double.BYTES, lower, from+numNative, length-numNative);
+			_rowBuffer._upper.get(row*Double.BYTES, upper, from+numNative, length-numNative);
+		}
+	}
+	
+	void getDualSolution(int offset, double[] out, int from, int length) {
+		if (offset<0 || offset+length>_numRows)
+			throw new IndexOutOfBoundsException(String.format("Constraint range [%d,%d) is out of range.",offset,offset+length));
+		if (offset+length > _numNativeRows)
+			flushBuffers();
+		_dual.get(offset*Double.BYTES, out, from, length);
+	}
+	
+	void getReducedCosts(int offset, double[] out, int from, int length) {
+		if (offset<0 || offset+length>_numCols)
+			throw new IndexOutOfBoundsException(String.format("Variable range [%d,%d) is out of range.",offset,offset+length));
+		if (offset+length > _numNativeCols)
+			flushBuffers();
+		getNativeValues(NATIVE.Clp_getReducedCost(_model), offset, out, from, length);
+	}
+	
+	void getRowActivity(int offset, double[] out, int from, int length) {
+		if (offset<0 || offset+length>_numRows)
+			throw new IndexOutOfBoundsException(String.format("Constraint range [%d,%d) is out of range.",offset,offset+length));
+		if (offset+length > _numNativeRows)
+			flushBuffers();
+		getNativeValues(NATIVE.Clp_getRowActivity(_model), offset, out, from, length);
+	}
+	
+	/**
+	 * Copy values from a native solution array, which is not allocated before the model has been solved.
+	 */
+	private static void getNativeValues(Pointer pointer, int offset, double[] out, int from, int length) {
+		if (pointer == null)
+			Arrays.fill(out, from, from+length, 0.);
+		else
+			pointer.get(offset*Double.BYTES, out, from, length);
+	}
+	
+	private static void checkLength(double[] out, int length) {
+		if (out.length<length)
+			throw new IllegalArgumentException(String.format("Array of size %d cannot hold %d values.",out.length,length));
+	}
+	
+	/**
+	 * The structure version changes whenever variables or constraints are passed to the native lib or the model is rebuilt, 
+	 * which may reallocate the native arrays. Views obtained by {@link CLP#getObjectiveView()} and related methods are only 
+	 * valid as long as the structure version remains the same.
+	 * @return structure version of the native model
+	 */
+	public int getStructureVersion() {
+		return _structureVersion;
+	}
+	
+	private void trackView(int change) {
+		if (_viewVersion != _structureVersion)
+			_viewChanges = 0;
+		_viewVersion = _structureVersion;
+		_viewChanges |= change;
+	}
+	
+	private DoubleBuffer view(Pointer pointer, int length) {
+		if (pointer == null || length == 0)
+			return DoubleBuffer.allocate(0);
+		return MemoryIO.getInstance().newDirectByteBuffer(pointer.address(), length*Double.BYTES)
+				.order(ByteOrder.nativeOrder()).asDoubleBuffer();
+	}
+	
+	/**
+	 * Writable view over the native array of variable lower bounds without copying. Buffered variables and constraints 
+	 * are flushed first. The view becomes invalid when the {@link CLP#getStructureVersion()} changes, and reading 
+	 * or writing an invalid view has undefined results. The model must not be garbage collected while the view is in use.
+	 * @return view of size number of variables
+	 */
+	public DoubleBuffer getVariableLowerView() {
+		flushBuffers();
+		trackView(BOUNDS_CHANGED);
+		return view(_colLower, _numCols);
+	}
+	
+	/**
+	 * Writable view over the native array of variable upper bounds. See {@link CLP#getVariableLowerView()}.
+	 * @return view of size number of variables
+	 */
+	public DoubleBuffer getVariableUpperView() {
+		flushBuffers();
+		trackView(BOUNDS_CHANGED);
+		return view(_colUpper, _numCols);
+	}
+	
+	/**
+	 * Writable view over the native array of objective coefficients. See {@link CLP#getVariableLowerView()}. 
+	 * @return view of size number of variables
+	 */
+	public DoubleBuffer getObjectiveView() {
+		flushBuffers();
+		trackView(OBJECTIVE_CHANGED);
+		return view(_obj, _numCols);
+	}
+	
+	/**
+	 * Writable view over the native array of constraint lower bounds. See {@link CLP#getVariableLowerView()}.
+	 * @return view of size number of constraints
+	 */
+	public DoubleBuffer getConstraintLowerView() {
+		flushBuffers();
+		trackView(BOUNDS_CHANGED);
+		return view(_rowLower, _numRows);
+	}
+	
+	/**
+	 * Writable view over the native array of constraint upper bounds. See {@link CLP#getVariableLowerView()}.
+	 * @return view of size number of constraints
+	 */
+	public DoubleBuffer getConstraintUpperView() {
+		flushBuffers();
+		trackView(BOUNDS_CHANGED);
+		return view(_rowUpper, _numRows);
+	}
+	
+	/**
+	 * Read-only view over the native array of solution values of the variables. See {@link CLP#getVariableLowerView()}.
+	 * @return view of size number of variables
+	 */
+	public DoubleBuffer getPrimalView() {
+		flushBuffers();
+		return view(_primal, _numCols).asReadOnlyBuffer();
+	}
+	
+	/**
+	 * Read-only view over the native array of dual solution values of the constraints. See {@link CLP#getVariableLowerView()}.
+	 * @return view of size number of constraints
+	 */
+	public DoubleBuffer getDualView() {
+		flushBuffers();
+		return view(_dual, _numRows).asReadOnlyBuffer();
+	}
+	
+	/**
+	 * Copy the solution values of all variables into the given array.
+	 * @param out array with at least as many elements as there are variables
+	 * @return out
+	 */
+	public double[] getPrimal(double[] out) {
+		return getPrimal(out, 0, _numCols);
+	}
+	
+	/**
+	 * Copy the solution values of a range of variables into the given array.
+	 * @param out array with at least length elements
+	 * @param offset index of the first variable
+	 * @param length number of variables
+	 * @return out
+	 */
+	public double[] getPrimal(double[] out, int offset, int length) {
+		checkLength(out, length);
+		getSolution(offset, out, 0, length);
+		return out;
+	}
+	
+	/**
+	 * Copy the dual solution values of all constraints into the given array.
+	 * @param out array with at least as many elements as there are constraints
+	 * @return out
+	 */
+	public double[] getDuals(double[] out) {
+		return getDuals(out, 0, _numRows);
+	}
+	
+	/**
+	 * Copy the dual solution values of a range of constraints into the given array.
+	 * @param out array with at least length elements
+	 * @param offset index of the first constraint
+	 * @param length number of constraints
+	 * @return out
+	 */
+	public double[] getDuals(double[] out, int offset, int length) {
+		checkLength(out, length);
+		getDualSolution(offset, out, 0, length);
+		return out;
+	}
+	
+	/**
+	 * Copy the reduced costs of all variables into the given array.
+	 * @param out array with at least as many elements as there are variables
+	 * @return out
+	 */
+	public double[] getReducedCosts(double[] out) {
+		return getReducedCosts(out, 0, _numCols);
+	}
+	
+	/**
+	 * Copy the reduced costs of a range of variables into the given array.
+	 * @param out array with at least length elements
+	 * @param offset index of the first variable
+	 * @param length number of variables
+	 * @return out
+	 */
+	public double[] getReducedCosts(double[] out, int offset, int length) {
+		checkLength(out, length);
+		getReducedCosts(offset, out, 0, length);
+		return out;
+	}
+	
+	/**
+	 * Copy the left-hand side values of all constraints at the current solution into the given array.
+	 * @param out array with at least as many elements as there are constraints
+	 * @return out
+	 */
+	public double[] getRowActivity(double[] out) {
+		return getRowActivity(out, 0, _numRows);
+	}
+	
+	/**
+	 * Copy the left-hand side values of a range of constraints at the current solution into the given array.
+	 * @param out array with at least length elements
+	 * @param offset index of the first constraint
+	 * @param length number of constraints
+	 * @return out
+	 */
+	public double[] getRowActivity(double[] out, int offset, int length) {
+		checkLength(out, length);
+		getRowActivity(offset, out, 0, length);
+		return out;
+	}
+	
+	/**
+	 * Add a new variable with coefficients in existing constraints. Buffered variables and constraints are flushed first, 
+	 * and the column is passed to the native lib directly. By default the variable is 0 <= x <= inf with zero objective coefficient.
+	 * @param constraints constraints that contain the variable
+	 * @param coefficients coefficients of the variable in these constraints
+	 * @return the new variable
+	 */
+	public CLPVariable addVariable(CLPConstraint[] constraints, double[] coefficients) {
+		if (constraints.length!=coefficients.length) throw new IllegalArgumentException("Arrays of unequal size.");
+		flushColsAndRows();
+		int[] rows = new int[constraints.length];
+		double[] elements = new double[constraints.length];
+		for (int i=0; i<rows.length; i++) {
+			rows[i] = constraints[i]._index;
+			elements[i] = checkValue(coefficients[i]);
+		}
+		double[] upper = new double[]{Double.POSITIVE_INFINITY};
+		int index = _numCols;
+		addColumns(1, rows.length, arrayToPointer(new double[1]), arrayToPointer(upper), arrayToPointer(new double[1]),
+				arrayToPointer(new int[]{0,rows.length}), arrayToPointer(rows), arrayToPointer(elements));
+		return new CLPVariable(this, index);
+	}
+	
+	/**
+	 * Add a block of variables given in compressed sparse column format. Buffered variables and constraints are flushed first
+	 * and the arrays are copied to native memory once. Coefficients are passed as given and are not checked 
+	 * against {@link CLP#smallestCoefficient(double)}.
+	 * @param starts position of the first nonzero of each column in rows and elements, followed by the total number of nonzeros
+	 * @param rows constraint indices of the nonzeros
+	 * @param elements coefficients of the nonzeros
+	 * @param lower lower bounds of the variables
+	 * @param upper upper bounds of the variables
+	 * @param objective objective coefficients of the variables
+	 * @return the new variables
+	 */
+	public CLPVariableBlock addColumns(int[] starts, int[] rows, double[] elements, double[] lower, double[] upper, double[] objective) {
+		int size = lower.length;
+		if (size==0) throw new IllegalArgumentException("The block does not contain variables.");
+		if (upper.length!=size || objective.length!=size || starts.length!=size+1) throw new IllegalArgumentException("Arrays of unequal size.");
+		int numElements = starts[size];
+		if (rows.length<numElements || elements.length<numElements) throw new IllegalArgumentException("Arrays of unequal size.");
+		flushColsAndRows();
+		for (int i=0; i<numElements; i++)
+			checkRow(rows[i]);
+		int offset = _numCols;
+		addColumns(size, numElements, arrayToPointer(lower), arrayToPointer(upper), arrayToPointer(objective), 
+				arrayToPointer(starts), arrayToPointer(rows), arrayToPointer(elements));
+		return new CLPVariableBlock(this, offset, size);
+	}
+	
+	private void addColumns(int size, int numElements, Pointer lower, Pointer upper, Pointer obj, Pointer starts, Pointer rows, Pointer elements) {
+		_changes |= OBJECTIVE_CHANGED;
+		NATIVE.Clp_addColumns(_model, size, lower, upper, obj, starts, rows, elements);
+		_obj = NATIVE.Clp_getObjCoefficients(_model);
+		//restore infinite bounds which are truncated by the native lib
+		_colLower = NATIVE.Clp_getColLower(_model);
+		lower.transferTo(0, _colLower, _numNativeCols*Double.BYTES, size*Double.BYTES);
+		_colUpper = NATIVE.Clp_getColUpper(_model);
+		upper.transferTo(0, _colUpper, _numNativeCols*Double.BYTES, size*Double.BYTES);
+		_primal = NATIVE.Clp_primalColumnSolution(_model);
+		_numCols += size;
+		_numNativeCols = _numCols;
+		_structureVersion++;
+		_numElements += numElements;
+		_elements = NATIVE.Clp_getElements(_model);
+	}
+	
 	/**
 	 * Create a set of variables.
 	 * @param size
@@ -457,13 +1005,17 @@ public class CLP {
 	 * @param value
 	 */
 	public void setObjectiveCoefficient(CLPVariable variable, double value) {
+		setObjectiveCoefficient(variable._index, value);
+	}
+	
+	private void setObjectiveCoefficient(int index, double value) {
 		value = checkValue(value);
-		if (_maximize)
-			value = -value;
-		if (variable._index < _numNativeCols) 
-			_obj.putDouble(variable._index*Double.BYTES, value);
+		if (index < _numNativeCols) {
+			_changes |= OBJECTIVE_CHANGED;
+			_obj.putDouble(index*Double.BYTES, value);
+		}
 		else 
-			_colBuffer.objectives.put(variable._index, value);
+			_colBuffer._objectives[index-_numNativeCols] = value;
 	}
 	
 	/**
@@ -472,18 +1024,23 @@ public class CLP {
 	 * @param value
 	 */
 	public void setQuadraticObjectiveCoefficient(CLPVariable variable, double value) {
+		setQuadraticObjectiveCoefficient(variable._index, value);
+	}
+	
+	private void setQuadraticObjectiveCoefficient(int index, double value) {
+		_changes |= MATRIX_CHANGED;
 		value = checkValue(value);
 		if (_maximize && value>0)
 			throw new IllegalArgumentException(String.format(
-					"Quadratic objective coefficient of variable %s must not be greater than zero.", variable.toString()));
+					"Quadratic objective coefficient of variable %s must not be greater than zero.", getVariableName(index)));
 		if (!_maximize && value<0)
 			throw new IllegalArgumentException(String.format(
-					"Quadratic objective coefficient of variable %s must not be less than zero.", variable.toString()));
-		if (variable._index >= _numCols)
-			setObjectiveCoefficient(variable,0);
+					"Quadratic objective coefficient of variable %s must not be less than zero.", getVariableName(index)));
+		if (index >= _numCols)
+			setObjectiveCoefficient(index,0);
 		if (_qobj == null)
 			_qobj = new QuadraticObjective();
-		_qobj.put(variable._index, _maximize ? -value : value);
+		_qobj.put(index, value);
 	}
 	
 	/**
@@ -516,6 +1073,13 @@ public class CLP {
 		return new CLPObjective(this);
 	}
 	
+	CLPObjective addObjective(TermMap terms, double offset) {
+		for (int i=0; i<terms.size(); i++)
+			setObjectiveCoefficient(terms._keys[i],terms._values[i]);
+		setObjectiveOffset(_offset+offset);
+		return new CLPObjective(this);
+	}
+	
 	/**
 	 * Add a new constraint to the model without using {@link CLP#createExpression()}.
 	 * @param lhs terms on the left-hand side
@@ -531,6 +1095,53 @@ public class CLP {
 		return new CLPConstraint(this,_numRows++,type);
 	}
 	
+	CLPConstraint addConstraint(TermMap lhs, TYPE type, double rhs) {
+		return new CLPConstraint(this,addRow(lhs,type,rhs),type);
+	}
+	
+	int addRow(TermMap lhs, TYPE type, double rhs) {
+		if (lhs.size()==0) throw new IllegalArgumentException("The constraint does not contain variables.");
+		if (_rowBuffer.size()>=_bufferSize)
+			flushBuffers();
+		_rowBuffer.addRow(lhs._keys,lhs._values,lhs.size(),type,rhs);
+		return _numRows++;
+	}
+	
+	/**
+	 * @param lb lower bound
+	 * @param ub upper bound
+	 * @return type of a constraint with the given bounds
+	 */
+	static TYPE getType(double lb, double ub) {
+		if (Double.compare(lb,ub)==0)
+			return TYPE.EQ;
+		if (lb<=-Double.MAX_VALUE && ub<Double.MAX_VALUE)
+			return TYPE.LEQ;
+		if (ub>=Double.MAX_VALUE && lb>-Double.MAX_VALUE)
+			return TYPE.GEQ;
+		return TYPE.NEQ;
+	}
+	
+	/**
+	 * Get a handle of the constraint with the given row index, e.g., of a constraint added with {@link CLPExpression#leqRow(double)}.
+	 * The constraint type is derived from the current row bounds. Free and ranged rows are of type {@link TYPE#NEQ}.
+	 * @param index row index
+	 * @return constraint handle
+	 */
+	public CLPConstraint getConstraint(int index) {
+		if (index<0 || index>=_numRows)
+			throw new IndexOutOfBoundsException(String.format("Constraint index %d is out of range.",index));
+		double lb = index < _numNativeRows ? _rowLower.getDouble(index*Double.BYTES) : _rowBuffer.lower(index-_numNativeRows);
+		double ub = index < _numNativeRows ? _rowUpper.getDouble(index*Double.BYTES) : _rowBuffer.upper(index-_numNativeRows);
+		TYPE type = getType(lb, ub);
+		CLPConstraint constraint = new CLPConstraint(this,index,type);
+		if (type==TYPE.LEQ)
+			constraint._rhs = ub;
+		else if (type!=TYPE.NEQ)
+			constraint._rhs = lb;
+		return constraint;
+	}
+	
 	/**
 	 * Add a new constraint to the model without using {@link CLP#createExpression()}.
 	 * @param lhs terms on the left-hand side
@@ -548,28 +1159,182 @@ public class CLP {
 	}
 	
 	/**
-	 * Solve the optimization problem. 
+	 * Add a block of constraints given in compressed sparse row format without using {@link CLP#createExpression()}. 
+	 * Buffered variables and constraints are flushed first and the arrays are copied to native memory once. 
+	 * Coefficients are passed as given and are not checked against {@link CLP#smallestCoefficient(double)}.
+	 * @param starts position of the first nonzero of each row in columns and elements, followed by the total number of nonzeros
+	 * @param columns variable indices of the nonzeros
+	 * @param elements coefficients of the nonzeros
+	 * @param lower lower bounds of the constraints
+	 * @param upper upper bounds of the constraints
+	 * @return the new constraints
+	 */
+	public CLPConstraintBlock addConstraints(int[] starts, int[] columns, double[] elements, double[] lower, double[] upper) {
+		int size = lower.length;
+		if (size==0) throw new IllegalArgumentException("The block does not contain constraints.");
+		if (upper.length!=size || starts.length!=size+1) throw new IllegalArgumentException("Arrays of unequal size.");
+		int numElements = starts[size];
+		if (columns.length<numElements || elements.length<numElements) throw new IllegalArgumentException("Arrays of unequal size.");
+		for (int i=0; i<numElements; i++)
+			checkColumn(columns[i]);
+		return addConstraints(size, numElements, arrayToPointer(starts), arrayToPointer(columns), arrayToPointer(elements), arrayToPointer(lower), arrayToPointer(upper));
+	}
+	
+	/**
+	 * Add a block of constraints of the same type given in compressed sparse row format without using {@link CLP#createExpression()}. 
+	 * @param starts position of the first nonzero of each row in columns and elements, followed by the total number of nonzeros
+	 * @param columns variable indices of the nonzeros
+	 * @param elements coefficients of the nonzeros
+	 * @param type constraint type
+	 * @param rhs right-hand sides of the constraints
+	 * @return the new constraints
+	 * @see CLP#addConstraints(int[], int[], double[], double[], double[])
+	 */
+	public CLPConstraintBlock addConstraints(int[] starts, int[] columns, double[] elements, TYPE type, double[] rhs) {
+		double[] lower = new double[rhs.length];
+		double[] upper = new double[rhs.length];
+		for (int i=0; i<rhs.length; i++) {
+			double value = checkValue(rhs[i]);
+			lower[i] = type==TYPE.EQ || type==TYPE.GEQ ? value : Double.NEGATIVE_INFINITY;
+			upper[i] = type==TYPE.EQ || type==TYPE.LEQ ? value : Double.POSITIVE_INFINITY;
+		}
+		return addConstraints(starts, columns, elements, lower, upper);
+	}
+	
+	/**
+	 * Add a block of constraints given in compressed sparse row format without using {@link CLP#createExpression()}. 
+	 * The direct buffers are handed to the native lib without copying. Buffers must be in native byte order and 
+	 * are read from their current position. 
+	 * @param size number of constraints
+	 * @param starts int buffer with the position of the first nonzero of each row, followed by the total number of nonzeros
+	 * @param columns int buffer with the variable indices of the nonzeros
+	 * @param elements double buffer with the coefficients of the nonzeros
+	 * @param lower double buffer with the lower bounds of the constraints
+	 * @param upper double buffer with the upper bounds of the constraints
+	 * @return the new constraints
+	 * @see CLP#addConstraints(int[], int[], double[], double[], double[])
+	 */
+	public CLPConstraintBlock addConstraints(int size, ByteBuffer starts, ByteBuffer columns, ByteBuffer elements, ByteBuffer lower, ByteBuffer upper) {
+		if (size<=0) throw new IllegalArgumentException("The block does not contain constraints.");
+		for (ByteBuffer buffer : new ByteBuffer[]{starts,columns,elements,lower,upper})
+			if (!buffer.isDirect() || buffer.order()!=ByteOrder.nativeOrder())
+				throw new IllegalArgumentException("Buffers must be direct and in native byte order.");
+		if (starts.remaining()<(size+1)*Integer.BYTES || lower.remaining()<size*Double.BYTES || upper.remaining()<size*Double.BYTES) 
+			throw new IllegalArgumentException("Buffers of unequal size.");
+		int numElements = starts.getInt(starts.position()+size*Integer.BYTES);
+		if (columns.remaining()<numElements*Integer.BYTES || elements.remaining()<numElements*Double.BYTES) 
+			throw new IllegalArgumentException("Buffers of unequal size.");
+		for (int i=0; i<numElements; i++)
+			checkColumn(columns.getInt(columns.position()+i*Integer.BYTES));
+		//pointers to direct buffers start at the base address, so the buffers are sliced at their current position
+		return addConstraints(size, numElements, Pointer.wrap(RUNTIME,starts.slice()), Pointer.wrap(RUNTIME,columns.slice()), 
+				Pointer.wrap(RUNTIME,elements.slice()), Pointer.wrap(RUNTIME,lower.slice()), Pointer.wrap(RUNTIME,upper.slice()));
+	}
+	
+	private CLPConstraintBlock addConstraints(int size, int numElements, Pointer starts, Pointer columns, Pointer elements, Pointer lower, Pointer upper) {
+		flushColsAndRows();
+		int offset = _numRows;
+		_numRows += size;
+		addNativeRows(size, numElements, lower, upper, starts, columns, elements);
+		return new CLPConstraintBlock(this, offset, size);
+	}
+	
+	private void checkColumn(int index) {
+		if (index<0 || index>=_numCols)
+			throw new IndexOutOfBoundsException(String.format("Variable index %d is out of range.",index));
+	}
+	
+	private void checkRow(int index) {
+		if (index<0 || index>=_numRows)
+			throw new IndexOutOfBoundsException(String.format("Constraint index %d is out of range.",index));
+	}
+	
+	/**
+	 * Solve the optimization problem. If the {@link ALGORITHM} is AUTO and the previous solution is optimal, the model is resolved 
+	 * from the previous basis with the dual simplex after changes of bounds or added constraints, and with the primal simplex 
+	 * after changes of the objective or added variables. Otherwise, or after changes of the constraint matrix, an initial solve is done.
 	 * @return solution {@link STATUS}
 	 */
 	public STATUS solve() {
 		//take care of empty problem
 		flushBuffers();
+		if (_autotuner != null && _tunedVersion != _structureVersion) {
+			CLPSolverConfig config = _autotuner.get(this);
+			if (config != null)
+				config(config);
+			_tunedVersion = _structureVersion;
+		}
+		if (_basisCache != null && NATIVE.Clp_statusExists(_model)==0) {
+			try {
+				CLPBasis basis = _basisCache.get(this);
+				if (basis != null)
+					setBasis(basis);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
 //		if (_solve!=null)
 //			NATIVE.clpInitialSolveWithOptions(_model,_solve);
 //		else
 //			NATIVE.clpInitialSolve(_model);
-		if (_algorithm==ALGORITHM.DUAL)
-			NATIVE.Clp_dual(_model,0);
-		else if (_algorithm==ALGORITHM.PRIMAL)
-			NATIVE.Clp_primal(_model,0);
-		else {
-			if (_solve!=null)
-				NATIVE.Clp_initialSolveWithOptions(_model,_solve);
-			else
-				NATIVE.Clp_initialSolve(_model);
+		_lastAlgorithm = _algorithm==null ? ALGORITHM.AUTO : _algorithm;
+		if (_lastAlgorithm==ALGORITHM.AUTO)
+			_lastAlgorithm = resolveAlgorithm();
+		int logLevel = NATIVE.Clp_logLevel(_model);
+		if (_listener != null) {
+			_lastProgress = -1;
+			_listenerFailure = null;
+			//the callback stays registered, since clearing it deletes the message handler that the model still uses
+			//registering deletes the message handler before copying it, so the callback is registered once per native model
+			if (_callbackModel != _model) {
+				NATIVE.Clp_registerCallBack(_model, _callback);
+				_callbackModel = _model;
+			}
+			//status messages are only issued from log level 1
+			if (logLevel < 1)
+				NATIVE.Clp_setLogLevel(_model, 1);
+		}
+		try {
+			if (_lastAlgorithm==ALGORITHM.DUAL)
+				NATIVE.Clp_dual(_model,0);
+			else if (_lastAlgorithm==ALGORITHM.PRIMAL)
+				NATIVE.Clp_primal(_model,0);
+			else {
+				if (_solve!=null)
+					NATIVE.Clp_initialSolveWithOptions(_model,_solve);
+				else
+					NATIVE.Clp_initialSolve(_model);
+			}
+		} finally {
+			if (_listener != null)
+				NATIVE.Clp_setLogLevel(_model, logLevel);
+			clearStop();
+		}
+		_changes = 0;
+		//the native lib may repack the constraint matrix during a solve, e.g., after columns have been appended
+		Pointer elements = NATIVE.Clp_getElements(_model);
+		if (elements == null || _elements == null || elements.address() != _elements.address() || _matrixIndex.moved(_model)) {
+			_elements = elements;
+			_matrixIndex = new MatrixIndex();
 		}
 		_objValue = NATIVE.Clp_getObjValue(_model);
+		//the native lib does not report the objective value of maximization problems with quadratic objective correctly
+		if (_qobj != null && _maximize)
+			_objValue = _qobj.objectiveValue();
 		int status = NATIVE.Clp_status(_model);
+		_optimal = status == 0;
+		if (_basisCache != null && status == 0) {
+			try {
+				_basisCache.put(this, getBasis());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		if (_listenerFailure != null) {
+			RuntimeException e = _listenerFailure;
+			_listenerFailure = null;
+			throw e;
+		}
 		if (status == 0)
 			return STATUS.OPTIMAL;
 		if (status == 1) 
@@ -584,54 +1349,314 @@ public class CLP {
 	}
 	
 	/**
-	 * Rebuild the model from scratch. The previous model is deleted from memory.
+	 * Choose how to resolve the model given the changes since the last solve. If the previous solution is optimal, 
+	 * the dual simplex is used after changes of bounds and added constraints, which keep the basis dual feasible, 
+	 * and the primal simplex is used after changes of the objective and added variables, which keep the basis primal feasible. 
+	 * @return DUAL, PRIMAL or AUTO for a full initial solve
+	 */
+	private ALGORITHM resolveAlgorithm() {
+		if (!_optimal || _qobj != null || NATIVE.Clp_statusExists(_model)==0)
+			return ALGORITHM.AUTO;
+		int changes = _changes;
+		if (_viewVersion == _structureVersion)
+			changes |= _viewChanges;
+		if (changes == OBJECTIVE_CHANGED)
+			return ALGORITHM.PRIMAL;
+		if (changes == BOUNDS_CHANGED || changes == 0)
+			return ALGORITHM.DUAL;
+		return ALGORITHM.AUTO;
+	}
+	
+	/**
+	 * Solve copies of this model with the given configurations concurrently, each on its own thread. The first optimal 
+	 * solution wins: its basis and solution are copied back into this model, and the other solves are stopped. 
+	 * If no configuration finds an optimal solution, the result of the first configuration is taken. 
+	 * The winning configuration is available from {@link #getRaceWinner()}. Since a copy of the model is created for 
+	 * each configuration, racing needs as much additional memory as there are configurations. The method returns once 
+	 * the stopped solves have returned, which for a presolved model happens only after its postsolve.
+	 * @param configs configurations to race
+	 * @return solution {@link STATUS} of the winner
+	 */
+	public STATUS solveRacing(CLPSolverConfig... configs) {
+		if (configs.length == 0) throw new IllegalArgumentException("At least one configuration is required.");
+		CLP[] models = new CLP[configs.length];
+		//a resolve of an optimal copy ignores the algorithm of its configuration, so copies racing different algorithms solve from scratch
+		boolean initial = false;
+		for (CLPSolverConfig config : configs)
+			initial |= config._algorithm != configs[0]._algorithm;
+		for (int i=0; i<configs.length; i++) {
+			models[i] = copy();
+			models[i]._basisCache = null;
+			configs[i].apply(models[i]);
+			if (initial)
+				models[i]._optimal = false;
+		}
+		STATUS[] status = new STATUS[configs.length];
+		CompletableFuture<Integer> winner = new CompletableFuture<>();
+		AtomicInteger running = new AtomicInteger(configs.length);
+		Thread[] threads = new Thread[configs.length];
+		for (int i=0; i<configs.length; i++) {
+			int index = i;
+			Thread thread = threads[i] = new Thread(() -> {
+				try {
+					status[index] = models[index].solve();
+					if (status[index] == STATUS.OPTIMAL)
+						winner.complete(index);
+				} catch (RuntimeException e) {
+					status[index] = STATUS.ERROR;
+				} finally {
+					if (running.decrementAndGet() == 0)
+						winner.complete(0);
+				}
+			}, "clp-race-"+i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+		int index = winner.join();
+		for (int i=0; i<configs.length; i++)
+			if (i != index)
+				models[i].requestStop();
+		//the copies are deleted when they are garbage collected, so the stopped solves must return first
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while racing solves.", e);
+			}
+		}
+		CLP model = models[index];
+		_raceWinner = configs[index];
+		byte[] basis = model.getStatus();
+		//no configuration produced a basis, e.g., because all solves failed
+		if (basis == null) {
+			_optimal = false;
+			return status[index];
+		}
+		setStatus(_model, basis);
+		transferValues(NATIVE.Clp_primalColumnSolution(model._model), NATIVE.Clp_primalColumnSolution(_model), _numCols);
+		transferValues(NATIVE.Clp_getReducedCost(model._model), NATIVE.Clp_getReducedCost(_model), _numCols);
+		transferValues(NATIVE.Clp_dualRowSolution(model._model), NATIVE.Clp_dualRowSolution(_model), _numRows);
+		transferValues(NATIVE.Clp_getRowActivity(model._model), NATIVE.Clp_getRowActivity(_model), _numRows);
+		_primal = NATIVE.Clp_primalColumnSolution(_model);
+		_dual = NATIVE.Clp_dualRowSolution(_model);
+		NATIVE.Clp_setProblemStatus(_model, NATIVE.Clp_status(model._model));
+		NATIVE.Clp_setNumberIterations(_model, model.getNumIterations());
+		_objValue = model._objValue;
+		_optimal = model._optimal;
+		_lastAlgorithm = model._lastAlgorithm;
+		_changes = 0;
+		if (_basisCache != null && _optimal) {
+			try {
+				_basisCache.put(this, getBasis());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return status[index];
+	}
+	
+	private static void transferValues(Pointer from, Pointer to, int length) {
+		if (from != null && to != null && length > 0)
+			from.transferTo(0, to, 0, length*Double.BYTES);
+	}
+	
+	/**
+	 * 
+	 * @return the configuration that won the last race or null, see {@link #solveRacing(CLPSolverConfig...)}
+	 */
+	public CLPSolverConfig getRaceWinner() {
+		return _raceWinner;
+	}
+	
+	/**
+	 * Callback of the native message handler that passes status messages on to the listener.
+	 */
+	private void progress(Pointer model, int msgno, int ndouble, Pointer dvec, int nint, Pointer ivec, int nchar, Pointer cvec) {
+		if (_listener == null || msgno != STATUS_MESSAGE || nint < 1 || ndouble < 3)
+			return;
+		int iteration = ivec.getInt(0);
+		//iterations start from zero again when the model is cleaned up after postsolve
+		if (_lastProgress >= 0 && iteration >= _lastProgress && iteration < _lastProgress+_progressStride)
+			return;
+		_lastProgress = iteration;
+		try {
+			if (!_listener.progress(iteration, dvec.getDouble(0), dvec.getDouble(Double.BYTES), dvec.getDouble(2*Double.BYTES)))
+				requestStop();
+		} catch (RuntimeException e) {
+			//exceptions cannot be thrown through the native lib, so the solve is stopped and the exception rethrown afterwards
+			_listenerFailure = e;
+			requestStop();
+		}
+	}
+	
+	/**
+	 * Stop a running solve by lowering the iteration limit to zero, which the simplex checks after every iteration.
+	 */
+	void requestStop() {
+		synchronized (_stopLock) {
+			if (!_stopping) {
+				_stopping = true;
+				_userMaxIterations = NATIVE.maximumIterations(_model);
+				NATIVE.Clp_setMaximumIterations(_model, 0);
+			}
+		}
+	}
+	
+	/**
+	 * Restore the iteration limit of the user after a solve has been stopped.
+	 */
+	void clearStop() {
+		synchronized (_stopLock) {
+			if (_stopping) {
+				_stopping = false;
+				NATIVE.Clp_setMaximumIterations(_model, _userMaxIterations);
+			}
+		}
+	}
+	
+	/**
+	 * Solve the optimization problem with the given executor, see {@link #solve()}. The model must not be accessed until the 
+	 * returned future is done. Cancelling the future with {@code cancel(true)} stops the simplex at its next iteration and returns 
+	 * once the native solve has ended, so the model can be used right after. The model then keeps the basis reached so far, 
+	 * and the next call of {@link #solve()} continues from there. Cancelling with {@code cancel(false)} only prevents 
+	 * a solve that has not started yet. When presolve has reduced the model, the native lib solves a reduced copy that 
+	 * does not see the iteration limit, and cancellation only takes effect after postsolve. Use {@link #presolve(boolean)} 
+	 * to turn presolve off if solves need to be cancelled promptly.
+	 * @param executor
+	 * @return future of the solution {@link STATUS}
+	 */
+	public CompletableFuture<STATUS> solveAsync(Executor executor) {
+		SolveFuture future = new SolveFuture();
+		executor.execute(future);
+		return future;
+	}
+	
+	/**
+	 * Rebuild the model from scratch. The previous model is deleted from memory, but its basis and solution are kept.
+	 */
+	public void reset() {
+		Pointer model = copyNativeModel(true);
+		NATIVE.Clp_deleteModel(_model);
+		_model = model;
+		boolean optimal = _optimal;
+		readNativeModel();
+		_optimal = optimal;
+	}
+	
+	/**
+	 * Create an independent copy of this model, including quadratic objective, basis, solution, names and settings. 
+	 * Buffered variables and constraints are flushed first. The native model is loaded with a single call from 
+	 * bulk copies of the constraint matrix, bounds and objective.
+	 * @return the copy
+	 */
+	public CLP copy() {
+		return copy(true);
+	}
+	
+	/**
+	 * @param withBasis whether basis and solution are copied
+	 * @return an independent copy of this model
+	 */
+	CLP copy(boolean withBasis) {
+		CLP clp = new CLP(copyNativeModel(withBasis));
+		clp.readNativeModel();
+		if (_qobj != null) {
+			clp._qobj = clp.new QuadraticObjective();
+			clp._qobj._elements = copyOfDoublePointer(_qobj._elements, _qobj._numElements);
+			clp._qobj._starts = _qobj._starts;
+			clp._qobj._index = _qobj._index;
+			clp._qobj._numElements = _qobj._numElements;
+		}
+		clp._varNames.putAll(_varNames);
+		clp._ctrNames.putAll(_ctrNames);
+		for (CLPVariableBlock block : _varBlocks.values())
+			new CLPVariableBlock(clp, block._offset, block._size).name(block._name);
+		clp._offset = _offset;
+		clp._bufferSize = _bufferSize;
+		clp._smallestElement = _smallestElement;
+		clp._maxSeconds = _maxSeconds;
+		if (_solve != null) {
+			clp.presolve(_presolve);
+			if (_algorithm != null)
+				clp.algorithm(_algorithm);
+		}
+		if (_config != null)
+			clp.config(_config);
+		clp._basisCache = _basisCache;
+		if (withBasis) {
+			clp._objValue = _objValue;
+			clp._optimal = _optimal;
+			clp._changes = _changes;
+		}
+		return clp;
+	}
+	
+	/**
+	 * @param starts native column starts
+	 * @return true if the columns of the native matrix are not stored contiguously
 	 */
- 	public void reset() {
+	private boolean hasGaps(Pointer starts) {
+		if (_numCols == 0)
+			return false;
+		int[] start = new int[_numCols+1];
+		starts.get(0, start, 0, _numCols+1);
+		int[] length = new int[_numCols];
+		NATIVE.Clp_getVectorLengths(_model).get(0, length, 0, _numCols);
+		for (int col=0; col<_numCols; col++)
+			if (start[col]+length[col] != start[col+1])
+				return true;
+		return start[0] != 0;
+	}
+	
+	/**
+	 * @param withBasis whether basis and solution are copied
+	 * @return a new native model with the same data and settings as the current model
+	 */
+	private Pointer copyNativeModel(boolean withBasis) {
 		flushBuffers();
-		Pointer newModel = init(); 
-		NATIVE.Clp_resize(newModel, _numRows, 0);
-		double[] a = new double[_numCols];
-		_colLower.get(0,a,0,_numCols);
-		double[] b = new double[_numCols];
-		_colUpper.get(0,b,0,_numCols);
-		double[] c = new double[_numCols];
-		_obj.get(0,c,0,_numCols);
-		double[] d = new double[_numElements];
-		_elements.get(0,d,0,_numElements);
-		NATIVE.Clp_addColumns(newModel,
-				_numCols,
-				copyOfDoublePointer(_colLower,_numCols),
-				copyOfDoublePointer(_colUpper,_numCols),
-				copyOfDoublePointer(_obj,_numCols),
-				arrayToPointer(getStarts()),
-				arrayToPointer(getIndex()),
-				copyOfDoublePointer(_elements,_numElements));
-		Pointer rowLower = _rowLower;
-		_rowLower = NATIVE.Clp_getRowLower(newModel);
-		for (int i=0; i<_numRows; i++)
-			_rowLower.putDouble(i*Double.BYTES,rowLower.getDouble(i*Double.BYTES));
-		Pointer rowUpper = _rowUpper;
-		_rowUpper = NATIVE.Clp_getRowUpper(newModel);
-		for (int i=0; i<_numRows; i++)
-			_rowUpper.putDouble(i*Double.BYTES,rowUpper.getDouble(i*Double.BYTES));
-		Pointer colLower = _colLower;
-		_colLower = NATIVE.Clp_getColLower(newModel);
-		for (int i=0; i<_numCols; i++) 
-			_colLower.putDouble(i*Double.BYTES,colLower.getDouble(i*Double.BYTES));
-		Pointer colUpper = _colUpper;
-		_colUpper = NATIVE.Clp_getColUpper(newModel);
-		for (int i=0; i<_numCols; i++)
-			_colUpper.putDouble(i*Double.BYTES,colUpper.getDouble(i*Double.BYTES));
-		_elements = NATIVE.Clp_getElements(newModel);
-		_index = null;
-		_starts = null;
-		_dual = NATIVE.Clp_dualRowSolution(newModel);
+		Pointer model = init();
+		//the native lib copies the arrays, so the native arrays of this model are passed directly if the matrix has no gaps
+		Pointer starts = NATIVE.Clp_getVectorStarts(_model);
+		Pointer rows = NATIVE.Clp_getIndices(_model);
+		Pointer elements = _elements;
+		if (hasGaps(starts)) {
+			MatrixIndex matrix = getMatrixIndex();
+			starts = arrayToPointer(matrix.starts());
+			rows = arrayToPointer(matrix.rows());
+			elements = arrayToPointer(matrix.values(_elements));
+		}
+		NATIVE.Clp_loadProblem(model, _numCols, _numRows, starts, rows, elements,
+				_colLower, _colUpper, _obj, _rowLower, _rowUpper);
+		//restore infinite bounds which are truncated by the native lib
+		_rowLower.transferTo(0, NATIVE.Clp_getRowLower(model), 0, _numRows*Double.BYTES);
+		_rowUpper.transferTo(0, NATIVE.Clp_getRowUpper(model), 0, _numRows*Double.BYTES);
+		if (_numCols > 0) {
+			_colLower.transferTo(0, NATIVE.Clp_getColLower(model), 0, _numCols*Double.BYTES);
+			_colUpper.transferTo(0, NATIVE.Clp_getColUpper(model), 0, _numCols*Double.BYTES);
+		}
 		if (_qobj != null) 
-			NATIVE.Clp_loadQuadraticObjective(newModel, _qobj._numElements, _qobj._starts, _qobj._index, _qobj._elements);
-		_obj = NATIVE.Clp_getObjCoefficients(newModel);
-		_primal = NATIVE.Clp_primalColumnSolution(newModel);
-		NATIVE.Clp_deleteModel(_model);
-		_model = newModel;
+			NATIVE.Clp_loadQuadraticObjective(model, _qobj._numElements, _qobj._starts, _qobj._index, _qobj._elements);
+		NATIVE.Clp_setOptimizationDirection(model, _maximize ? -1 : 1);
+		NATIVE.Clp_setObjectiveOffset(model, -_offset);
+		NATIVE.Clp_setLogLevel(model, NATIVE.Clp_logLevel(_model));
+		NATIVE.Clp_setPrimalTolerance(model, NATIVE.Clp_primalTolerance(_model));
+		NATIVE.Clp_setDualTolerance(model, NATIVE.Clp_dualTolerance(_model));
+		NATIVE.Clp_scaling(model, NATIVE.Clp_scalingFlag(_model));
+		NATIVE.Clp_setMaximumIterations(model, NATIVE.maximumIterations(_model));
+		//the native lib adds the time elapsed so far to the limit, so it is taken from the value set by the user
+		if (!Double.isNaN(_maxSeconds))
+			NATIVE.Clp_setMaximumSeconds(model, _maxSeconds);
+		byte[] status = withBasis ? getStatus() : null;
+		if (status != null) {
+			setStatus(model, status);
+			if (_primal != null)
+				NATIVE.Clp_setColSolution(model, copyOfDoublePointer(_primal, _numCols));
+			Pointer dual = NATIVE.Clp_dualRowSolution(model);
+			if (_dual != null && dual != null)
+				_dual.transferTo(0, dual, 0, _numRows*Double.BYTES);
+		}
+		return model;
 	}
 	
 	/**
@@ -657,7 +1682,122 @@ public class CLP {
 	 * @return the optimal objective value
 	 */
 	public double getObjectiveValue() {
-		return _maximize? -_objValue : _objValue;
+		return _objValue;
+	}
+	
+	/**
+	 * 
+	 * @return number of simplex iterations of the last solve
+	 */
+	public int getNumIterations() {
+		return NATIVE.Clp_numberIterations(_model);
+	}
+	
+	/**
+	 * Fingerprint of the model structure, which depends on the number of variables and constraints, the sparsity pattern 
+	 * of the constraint matrix and the names of variables and constraints, but not on coefficients, bounds or objective. 
+	 * Structurally identical models can share a basis. Buffered variables and constraints are flushed first.
+	 * @return 64-bit hash of the model structure
+	 */
+	public long getStructureFingerprint() {
+		flushBuffers();
+		if (_fingerprintVersion != _structureVersion) {
+			MatrixIndex matrix = getMatrixIndex();
+			long hash = 31L*_numCols + _numRows;
+			int numElements = 0;
+			for (int col=0; col<_numCols; col++) {
+				for (int k=matrix._offsets[col]; k<matrix._offsets[col]+matrix._lengths[col]; k++)
+					hash = hash*0x9E3779B97F4A7C15L + matrix._rows[k];
+				numElements += matrix._lengths[col];
+				hash = hash*0x9E3779B97F4A7C15L + numElements;
+			}
+			_patternHash = hash;
+			_fingerprintVersion = _structureVersion;
+		}
+		//names are hashed independent of the order of the maps
+		long names = 0;
+		for (Map.Entry<Integer,String> e : _varNames.entrySet())
+			names += mix(31L*e.getKey() + e.getValue().hashCode());
+		for (Map.Entry<Integer,String> e : _ctrNames.entrySet())
+			names += mix(-31L*e.getKey() + e.getValue().hashCode());
+		for (CLPVariableBlock block : _varBlocks.values())
+			names += mix(31L*block._offset + 17L*block._size + block._name.hashCode());
+		return mix(mix(_patternHash) + names);
+	}
+	
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+	
+	/**
+	 * Capture the current basis without solution values. See {@link CLP#getBasis(boolean)}.
+	 * @return the basis or null if the model has not been solved
+	 */
+	public CLPBasis getBasis() {
+		return getBasis(false);
+	}
+	
+	/**
+	 * Capture the current basis, which can be installed into this or a structurally identical model with {@link CLP#setBasis(CLPBasis)}. 
+	 * Buffered variables and constraints are flushed first.
+	 * @param withSolution whether primal and dual solution values are captured as well
+	 * @return the basis or null if the model has not been solved
+	 */
+	public CLPBasis getBasis(boolean withSolution) {
+		flushBuffers();
+		byte[] status = getStatus();
+		if (status == null)
+			return null;
+		double[] primal = null;
+		double[] dual = null;
+		if (withSolution) {
+			primal = new double[_numCols];
+			getNativeValues(_primal, 0, primal, 0, _numCols);
+			dual = new double[_numRows];
+			getNativeValues(_dual, 0, dual, 0, _numRows);
+		}
+		return new CLPBasis(_numCols, _numRows, status, primal, dual);
+	}
+	
+	/**
+	 * Install a basis to warm start the next solve. Buffered variables and constraints are flushed first.
+	 * @param basis basis of a model with the same number of variables and constraints
+	 */
+	public void setBasis(CLPBasis basis) {
+		flushBuffers();
+		if (basis._numCols!=_numCols || basis._numRows!=_numRows)
+			throw new IllegalArgumentException(String.format("Basis with %d variables and %d constraints does not match the model with %d variables and %d constraints.",
+					basis._numCols,basis._numRows,_numCols,_numRows));
+		setStatus(_model, basis._status);
+		if (basis._primal != null) {
+			NATIVE.Clp_setColSolution(_model, arrayToPointer(basis._primal));
+			_primal = NATIVE.Clp_primalColumnSolution(_model);
+			_dual = NATIVE.Clp_dualRowSolution(_model);
+			if (_dual != null)
+				_dual.put(0, basis._dual, 0, _numRows);
+		}
+	}
+	
+	/**
+	 * @return status of all native columns followed by all native rows or null if there is none
+	 */
+	private byte[] getStatus() {
+		if (NATIVE.Clp_statusExists(_model)==0)
+			return null;
+		byte[] status = new byte[_numNativeCols+_numNativeRows];
+		NATIVE.Clp_statusArray(_model).get(0, status, 0, status.length);
+		return status;
+	}
+	
+	private static void setStatus(Pointer model, byte[] status) {
+		Pointer pointer = Memory.allocateDirect(RUNTIME, status.length);
+		pointer.put(0, status, 0, status.length);
+		NATIVE.Clp_copyinStatus(model, pointer);
 	}
 	
 	/**
@@ -725,6 +1865,53 @@ public class CLP {
 	 */
 	public CLP maxSeconds(double seconds) {
 		NATIVE.Clp_setMaximumSeconds(_model, seconds);
+		_maxSeconds = seconds;
+		return this;
+	}
+	
+	/**
+	 * Report the progress of the simplex to the given listener. The native lib issues a status message after every 
+	 * refactorization of the basis, i.e., every few dozen iterations, and the listener is called with the first message 
+	 * at least the given number of iterations after the last call. If the listener returns false, the simplex stops at its 
+	 * next iteration with status {@link STATUS#LIMIT}. Status messages are issued from log level 1, so the log level is 
+	 * raised to 1 during the solve if necessary. When presolve has reduced the model, progress is reported for the reduced 
+	 * model, which cannot be stopped before postsolve, see {@link #presolve(boolean)}.
+	 * @param listener the listener or null to remove it
+	 * @param stride minimum number of iterations between two calls of the listener
+	 * @return builder
+	 */
+	public CLP progressListener(CLPProgressListener listener, int stride) {
+		if (stride<1) throw new IllegalArgumentException("The stride must be at least 1.");
+		_listener = listener;
+		_progressStride = stride;
+		//the native lib may call back as long as the model exists
+		if (listener != null && _callback == null)
+			_callback = this::progress;
+		return this;
+	}
+	
+	/**
+	 * Apply the settings of the given configuration. Copies of the model get the same configuration. The algorithm and 
+	 * presolve settings of the configuration apply whenever the model is solved from scratch, while resolves after changes 
+	 * of an optimal model follow {@link #solve()}.
+	 * @param config
+	 * @return builder
+	 */
+	public CLP config(CLPSolverConfig config) {
+		config.apply(this);
+		_config = config;
+		return this;
+	}
+	
+	/**
+	 * Attach an autotuner. Before the model is solved for the first time after its structure has changed, the profile 
+	 * tuned for models of the same family is applied if there is one. See {@link CLPAutotuner}.
+	 * @param autotuner the autotuner or null to detach the current one
+	 * @return builder
+	 */
+	public CLP autotuner(CLPAutotuner autotuner) {
+		_autotuner = autotuner;
+		_tunedVersion = -1;
 		return this;
 	}
 	
@@ -759,6 +1946,18 @@ public class CLP {
 	public CLP presolve(boolean on) {
 		if (_solve==null) _solve = NATIVE.ClpSolve_new();
 		NATIVE.ClpSolve_setPresolveType(_solve, on ? 0 : 1, -1);
+		_presolve = on;
+		return this;
+	}
+	
+	/**
+	 * Attach a cache of bases. Before the model is solved for the first time, the best matching basis in the cache is installed,
+	 * and the final basis of every optimal solve is stored in the cache. See {@link CLPBasisCache}.
+	 * @param cache the cache or null to detach the current one
+	 * @return builder
+	 */
+	public CLP basisCache(CLPBasisCache cache) {
+		_basisCache = cache;
 		return this;
 	}
 	
@@ -768,6 +1967,16 @@ public class CLP {
 	 * @return builder
 	 */
 	public CLP algorithm(ALGORITHM algorithm) {
+		solveType(algorithm);
+		_algorithm = algorithm;
+		return this;
+	}
+	
+	/**
+	 * Set the algorithm of initial solves, which go through presolve, without fixing the algorithm of resolves.
+	 * @param algorithm
+	 */
+	void solveType(ALGORITHM algorithm) {
 		if (_solve==null) _solve = NATIVE.ClpSolve_new();
 		switch(algorithm) {
 		case DUAL:
@@ -789,8 +1998,6 @@ public class CLP {
 			NATIVE.ClpSolve_setSolveType(_solve, 5, -1);
 			break;
 		}
-		_algorithm = algorithm;
-		return this;
 	}
 
 	/**
@@ -828,20 +2035,52 @@ public class CLP {
 	
 	
 	
-	private int[] toIntArray(List<Integer> ints) {
-		int[] ar = new int[ints.size()];
-		int i=0;
-		for (Integer j : ints)
-			ar[i++] = j;
-		return ar;
-	}
-	
-	private double[] toDoubleArray(List<Double> doubles) {
-		double[] ar = new double[doubles.size()];
-		int i=0;
-		for (Double d : doubles)
-			ar[i++] = d;
-		return ar;
+	/**
+	 * Future of an asynchronous solve. Cancellation stops the running native solve, see {@link CLP#requestStop()}, 
+	 * and restores the iteration limit once the solve has returned.
+	 */
+	private class SolveFuture extends CompletableFuture<STATUS> implements Runnable {
+		
+		boolean _running;
+		
+		@Override
+		public void run() {
+			synchronized (this) {
+				if (isDone())
+					return;
+				_running = true;
+			}
+			try {
+				complete(solve());
+			} catch (RuntimeException | Error e) {
+				completeExceptionally(e);
+			} finally {
+				synchronized (this) {
+					//a cancellation may arrive after the solve has cleared its stop
+					clearStop();
+					_running = false;
+					notifyAll();
+				}
+			}
+		}
+		
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			if (!cancelled || !mayInterruptIfRunning)
+				return cancelled;
+			synchronized (this) {
+				if (_running)
+					requestStop();
+				try {
+					while (_running)
+						wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return cancelled;
+		}
 	}
 	
 	private class QuadraticObjective {
@@ -873,11 +2112,32 @@ public class CLP {
 			_buffer.clear();
 		}
 		
+		/**
+		 * @return objective value of the current solution including linear terms and offset
+		 */
+		double objectiveValue() {
+			double[] x = new double[_numCols];
+			_primal.get(0, x, 0, _numCols);
+			double[] c = new double[_numCols];
+			_obj.get(0, c, 0, _numCols);
+			double[] q = new double[_numElements];
+			_elements.get(0, q, 0, _numElements);
+			double value = _offset;
+			for (int i=0; i<_numCols; i++)
+				value += c[i]*x[i];
+			for (int i=0; i<_numElements; i++)
+				value += 0.5*q[i]*x[i]*x[i];
+			return value;
+		}
+		
 		void update(Pointer model) {
 			if (!_hasChange) return;
 			flush();
 			NATIVE.Clp_loadQuadraticObjective(model, _numCols, _starts, _index, _elements);
+			_hasChange = false;
+			//loading replaces the native objective, which invalidates views of the linear objective
 			_obj = NATIVE.Clp_getObjCoefficients(model);
+			_structureVersion++;
 		}
 		
 		void put(int index, double value) {
@@ -892,152 +2152,204 @@ public class CLP {
 		double get(int index) {
 			return _elements.getDouble(index*Double.BYTES);
 		}
-		
-		void neg() {
-			for (int i=0; i<_numCols; i++)
-				_elements.putDouble(i*Double.BYTES, -_elements.getDouble(i*Double.BYTES));
-			_hasChange = true;
-			update(_model);
-		}
 	}
 	
 	/**
-	 * Buffer for new variables added to the model.
+	 * Buffer for new variables added to the model. Bounds and objective coefficients of the pending columns 
+	 * are kept in dense arrays offset from the number of native columns and reused between flushes.
 	 * @author Nils Loehndorf
 	 *
 	 */
-	private class ColBuffer {
+	class ColBuffer {
+		
+		double[] _objectives = new double[16];
+		double[] _lower = new double[16];
+		double[] _upper = new double[16];
 		int _size;
-		Map<Integer,Double> objectives = new HashMap<>();
-		Map<Integer,Double> lower = new HashMap<>();
-		Map<Integer,Double> upper = new HashMap<>();
 		
 		void addCol() {
-			_size++;
+			addCols(1, 0., Double.POSITIVE_INFINITY, 0.);
+		}
+		
+		void addCols(int n, double lb, double ub, double obj) {
+			if (_size+n > _objectives.length) {
+				int capacity = Math.max(_size+n, _objectives.length*2);
+				_objectives = Arrays.copyOf(_objectives, capacity);
+				_lower = Arrays.copyOf(_lower, capacity);
+				_upper = Arrays.copyOf(_upper, capacity);
+			}
+			Arrays.fill(_objectives, _size, _size+n, obj);
+			Arrays.fill(_lower, _size, _size+n, lb);
+			Arrays.fill(_upper, _size, _size+n, ub);
+			_size += n;
 		}
 		
 		int size() {
 			return _size;
 		}
+		
+		/**
+		 * Empty the buffer but keep its capacity.
+		 */
+		void clear() {
+			_size = 0;
+		}
 	}
 	
 	/**
-	 * Buffer for new constraints added to the model. 
+	 * Buffer for new constraints added to the model. Rows are staged in compressed row format
+	 * directly in native memory which grows geometrically and is reused between flushes.
 	 * @author Nils Loehndorf
 	 *
 	 */
-	private class RowBuffer {
+	class RowBuffer {
 		
-		List<Integer> _columns = new ArrayList<>();
-		List<Integer> _starts = new ArrayList<>();
-		List<Double> _elements = new ArrayList<>();
-		List<Double> _lower = new ArrayList<>();
-		List<Double> _upper = new ArrayList<>();
+		Pointer _columns;
+		Pointer _starts;
+		Pointer _elements;
+		Pointer _lower;
+		Pointer _upper;
+		int _rowCapacity = 16;
+		int _elementCapacity = 16;
+		int _size;
+		int _numElements;
 		
 		RowBuffer() {
-			_starts.add(0);
+			_columns = Memory.allocateDirect(RUNTIME, _elementCapacity*Integer.BYTES);
+			_elements = Memory.allocateDirect(RUNTIME, _elementCapacity*Double.BYTES);
+			_starts = Memory.allocateDirect(RUNTIME, (_rowCapacity+1)*Integer.BYTES);
+			_lower = Memory.allocateDirect(RUNTIME, _rowCapacity*Double.BYTES);
+			_upper = Memory.allocateDirect(RUNTIME, _rowCapacity*Double.BYTES);
+			_starts.putInt(0, 0);
 		}
 		
 		int size() {
-			return _lower.size();
+			return _size;
 		}
 		
-		int[] columns() {
-			return toIntArray(_columns);
+		int numElements() {
+			return _numElements;
 		}
 		
-		int[] starts() {
-			return toIntArray(_starts);
+		/**
+		 * Empty the buffer but keep its capacity.
+		 */
+		void clear() {
+			_size = 0;
+			_numElements = 0;
 		}
 		
-		double[] elements() {
-			return toDoubleArray(_elements);
+		private Pointer grow(Pointer pointer, int usedBytes, int newBytes) {
+			Pointer grown = Memory.allocateDirect(RUNTIME, newBytes);
+			pointer.transferTo(0, grown, 0, usedBytes);
+			return grown;
 		}
 		
-		double[] lower() {
-			return toDoubleArray(_lower);
+		private void ensureCapacity(int rows, int elements) {
+			if (rows > _rowCapacity) {
+				int capacity = Math.max(rows, _rowCapacity*2);
+				_starts = grow(_starts, (_size+1)*Integer.BYTES, (capacity+1)*Integer.BYTES);
+				_lower = grow(_lower, _size*Double.BYTES, capacity*Double.BYTES);
+				_upper = grow(_upper, _size*Double.BYTES, capacity*Double.BYTES);
+				_rowCapacity = capacity;
+			}
+			if (elements > _elementCapacity) {
+				int capacity = Math.max(elements, _elementCapacity*2);
+				_columns = grow(_columns, _numElements*Integer.BYTES, capacity*Integer.BYTES);
+				_elements = grow(_elements, _numElements*Double.BYTES, capacity*Double.BYTES);
+				_elementCapacity = capacity;
+			}
 		}
 		
-		double[] upper() {
-			return toDoubleArray(_upper);
+		double lower(int row) {
+			return _lower.getDouble(row*Double.BYTES);
+		}
+		
+		double upper(int row) {
+			return _upper.getDouble(row*Double.BYTES);
+		}
+		
+		void setLower(int row, double value) {
+			_lower.putDouble(row*Double.BYTES, value);
+		}
+		
+		void setUpper(int row, double value) {
+			_upper.putDouble(row*Double.BYTES, value);
 		}
 		
 		void setElement(int rowIndex, int colIndex, double value) {
-			checkValue(value);
-			int pos = _starts.get(rowIndex);
-			int end = pos + _starts.get(rowIndex+1);
-			while(_columns.get(pos++)!=colIndex) {
-				if (pos>=end)
+			int pos = _starts.getInt(rowIndex*Integer.BYTES);
+			int end = _starts.getInt((rowIndex+1)*Integer.BYTES);
+			while(_columns.getInt(pos*Integer.BYTES)!=colIndex) {
+				if (++pos>=end)
 					throw new IllegalStateException("Constraint does not contain this variable. Must be redefined first.");
 			}
-			pos--;
-			value = checkValue(value);
-			_elements.set(pos,value);
+			_elements.putDouble(pos*Double.BYTES, checkValue(value));
+		}
+		
+		private void addElement(int column, double value) {
+			_columns.putInt(_numElements*Integer.BYTES, column);
+			_elements.putDouble(_numElements*Double.BYTES, checkValue(value));
+			_numElements++;
+		}
+		
+		private void endRow() {
+			_starts.putInt(++_size*Integer.BYTES, _numElements);
 		}
 		
 		void addDummyRow() {
-			_lower.add(Double.NEGATIVE_INFINITY);
-			_upper.add(Double.POSITIVE_INFINITY);
-			_starts.add(_elements.size()+1);
-			_columns.add(0);
-			_elements.add(1.);
+			ensureCapacity(_size+1, _numElements+1);
+			setLower(_size, Double.NEGATIVE_INFINITY);
+			setUpper(_size, Double.POSITIVE_INFINITY);
+			addElement(0, 1.);
+			endRow();
 			_numRows++;
 		}
 		
-		void addRow(Map<CLPVariable,Double> lhs, TYPE type, double rhs) {
+		private void addBounds(TYPE type, double rhs) {
 			rhs = checkValue(rhs);
 			switch(type) {
 			case EQ:
-				_lower.add(rhs);
-				_upper.add(rhs);
+				setLower(_size, rhs);
+				setUpper(_size, rhs);
 				break;
 			case GEQ:
-				_lower.add(rhs);
-				_upper.add(Double.POSITIVE_INFINITY);
+				setLower(_size, rhs);
+				setUpper(_size, Double.POSITIVE_INFINITY);
 				break;
 			case LEQ:
-				_lower.add(Double.NEGATIVE_INFINITY);
-				_upper.add(rhs);
+				setLower(_size, Double.NEGATIVE_INFINITY);
+				setUpper(_size, rhs);
 				break;
 			default:
-				_lower.add(Double.NEGATIVE_INFINITY);
-				_upper.add(Double.POSITIVE_INFINITY);
+				setLower(_size, Double.NEGATIVE_INFINITY);
+				setUpper(_size, Double.POSITIVE_INFINITY);
 				break;
 			}
-			_starts.add(_elements.size()+lhs.size());
-			for (CLPVariable variable : lhs.keySet()) {
-				_columns.add(variable._index);
-				double value = lhs.get(variable);
-				value = checkValue(value);
-				_elements.add(value);
-			}
+		}
+		
+		void addRow(int[] columns, double[] elements, int length, TYPE type, double rhs) {
+			ensureCapacity(_size+1, _numElements+length);
+			addBounds(type, rhs);
+			for (int i=0; i<length; i++)
+				addElement(columns[i], elements[i]);
+			endRow();
+		}
+		
+		void addRow(Map<CLPVariable,Double> lhs, TYPE type, double rhs) {
+			ensureCapacity(_size+1, _numElements+lhs.size());
+			addBounds(type, rhs);
+			for (Map.Entry<CLPVariable,Double> term : lhs.entrySet())
+				addElement(term.getKey()._index, term.getValue());
+			endRow();
 		}
 		
 		void addRow(List<CLPVariable> variables, List<Double> lhs, TYPE type, double rhs) {
-			rhs = checkValue(rhs);
-			switch(type) {
-			case EQ:
-				_lower.add(rhs);
-				_upper.add(rhs);
-				break;
-			case GEQ:
-				_lower.add(rhs);
-				_upper.add(Double.POSITIVE_INFINITY);
-				break;
-			case LEQ:
-				_lower.add(Double.NEGATIVE_INFINITY);
-				_upper.add(rhs);
-				break;
-			default:
-				_lower.add(Double.NEGATIVE_INFINITY);
-				_upper.add(Double.POSITIVE_INFINITY);
-				break;
-			}
-			_starts.add(_elements.size()+lhs.size());
-			for (int i=0; i<variables.size(); i++) {
-				_columns.add(variables.get(i)._index);
-				_elements.add(checkValue(lhs.get(i)));
-			}
+			ensureCapacity(_size+1, _numElements+lhs.size());
+			addBounds(type, rhs);
+			for (int i=0; i<variables.size(); i++)
+				addElement(variables.get(i)._index, lhs.get(i));
+			endRow();
 		}
 	}
 	
@@ -1061,13 +2373,13 @@ public class CLP {
 		//objective function
 		for (int col=0; col<_numCols; col++) {
 			double c = _obj.getDouble(col*Double.BYTES);
-			modelString.append(termToString(_maximize ? -c : c,getVariableName(col)));
+			modelString.append(termToString(c,getVariableName(col)));
 		}
 		if (_qobj != null) {
 			modelString.append(" + [");
 			for (int col=0; col<_numCols; col++) {
 				double c = _qobj.get(col);
-				modelString.append(termToString(_maximize ? -c : c, getVariableName(col)+"^2"));
+				modelString.append(termToString(c, getVariableName(col)+"^2"));
 			}
 			modelString.append(" ] / 2");
 		}
@@ -1076,16 +2388,15 @@ public class CLP {
 		List<StringBuilder> constraintStrings = new ArrayList<>(_numRows);
 		for (int row=0; row<_numRows; row++)
 			constraintStrings.add(new StringBuilder().append(getConstraintName(row)).append(":"));
-		int[] starts = getStarts();
-		int[] index = getIndex();
+		MatrixIndex matrix = getMatrixIndex();
+		int[] starts = matrix.starts();
+		int[] rows = matrix.rows();
+		double[] elements = matrix.values(_elements);
 		for (int col=0; col<_numCols; col++) {
-			int begin = starts[col];
-			int end = starts[col+1];
-			for (int j=begin; j<end; j++) {
-				int row = index[j];
-				double element = _elements.getDouble(j*Double.BYTES);
-//				if (element != 0)
-					constraintStrings.get(row).append(termToString(element,getVariableName(col)));
+			for (int j=starts[col]; j<starts[col+1]; j++) {
+				int row = rows[j];
+//				if (elements[j] != 0)
+					constraintStrings.get(row).append(termToString(elements[j],getVariableName(col)));
 			}
 		}
 		for (int row=0; row<_numRows; row++) {
@@ -0,0 +1,238 @@
+package com.quantego.clp;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Tunes the solver configuration for a family of models, i.e., models with the same structure fingerprint,
+ * see {@link CLP#getStructureFingerprint()}. A representative model of the family is solved from scratch with every
+ * configuration of a search space under a time limit. The fastest robust configuration wins, where a configuration is
+ * robust if it finds an optimal solution in every repetition with the same objective value as the model solved with its
+ * own settings. The winning profile is stored in a properties file in the directory of the tuner.</p>
+ *
+ * <p>When a tuner is attached to a model with {@link CLP#autotuner(CLPAutotuner)}, the profile of its family is applied
+ * before the model is solved. A tuner may be shared by models that are solved in different threads.</p>
+ * @author Nils Loehndorf
+ *
+ */
+public class CLPAutotuner {
+
+	static final String SUFFIX = ".profile";
+
+	File _dir;
+	Map<Long,CLPSolverConfig> _profiles = new ConcurrentHashMap<>();
+	List<CLPSolverConfig> _space = defaultSpace();
+	double _timeLimit = 60;
+	int _repetitions = 3;
+	double _tolerance = 1e-6;
+	volatile double[] _times;
+
+	/**
+	 * Open a tuner in the given directory, which is created if necessary. Profiles already stored in the directory are loaded.
+	 * @param dir directory of the profiles
+	 * @throws IOException
+	 */
+	public CLPAutotuner(File dir) throws IOException {
+		Files.createDirectories(dir.toPath());
+		_dir = dir;
+		File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+		if (files != null) {
+			for (File file : files) {
+				Properties properties = new Properties();
+				try (InputStream in = new FileInputStream(file)) {
+					properties.load(in);
+				}
+				try {
+					_profiles.put(Long.parseUnsignedLong(properties.getProperty("fingerprint"), 16), CLPSolverConfig.load(properties));
+				} catch (RuntimeException e) {
+					//ignore profiles that cannot be read
+				}
+			}
+		}
+	}
+
+	/**
+	 * The default search space combines all algorithms with and without presolve and scaling, and adds variants of
+	 * the simplex algorithms with reduced presolve and with looser tolerances.
+	 * @return list of configurations
+	 */
+	public static List<CLPSolverConfig> defaultSpace() {
+		List<CLPSolverConfig> space = new ArrayList<>();
+		for (CLP.ALGORITHM algorithm : new CLP.ALGORITHM[]{CLP.ALGORITHM.AUTO, CLP.ALGORITHM.DUAL, CLP.ALGORITHM.PRIMAL, CLP.ALGORITHM.BARRIER})
+			for (boolean presolve : new boolean[]{true, false})
+				for (CLP.SCALING scaling : new CLP.SCALING[]{CLP.SCALING.OFF, CLP.SCALING.AUTO})
+					space.add(new CLPSolverConfig().algorithm(algorithm).presolve(presolve).scaling(scaling));
+		for (CLP.ALGORITHM algorithm : new CLP.ALGORITHM[]{CLP.ALGORITHM.DUAL, CLP.ALGORITHM.PRIMAL}) {
+			space.add(new CLPSolverConfig().algorithm(algorithm)
+					.disable(CLPSolverConfig.PRESOLVE.TIGHTEN, CLPSolverConfig.PRESOLVE.FORCING, CLPSolverConfig.PRESOLVE.DUPCOL, CLPSolverConfig.PRESOLVE.DUPROW));
+			space.add(new CLPSolverConfig().algorithm(algorithm).primalTolerance(1e-6).dualTolerance(1e-6));
+		}
+		return space;
+	}
+
+	/**
+	 * Set the configurations to search (default={@link #defaultSpace()}).
+	 * @param space
+	 * @return builder
+	 */
+	public CLPAutotuner searchSpace(List<CLPSolverConfig> space) {
+		if (space.isEmpty()) throw new IllegalArgumentException("The search space must not be empty.");
+		_space = new ArrayList<>(space);
+		return this;
+	}
+
+	/**
+	 * Set the time limit of a single solve in seconds (default=60).
+	 * @param seconds
+	 * @return builder
+	 */
+	public CLPAutotuner timeLimit(double seconds) {
+		_timeLimit = seconds;
+		return this;
+	}
+
+	/**
+	 * Set the number of solves per configuration (default=3). The median solution time is compared.
+	 * @param repetitions
+	 * @return builder
+	 */
+	public CLPAutotuner repetitions(int repetitions) {
+		if (repetitions<1) throw new IllegalArgumentException("The number of repetitions must be at least 1.");
+		_repetitions = repetitions;
+		return this;
+	}
+
+	/**
+	 * Set the relative tolerance of objective values for a configuration to be robust (default=1e-6).
+	 * @param tolerance
+	 * @return builder
+	 */
+	public CLPAutotuner tolerance(double tolerance) {
+		_tolerance = tolerance;
+		return this;
+	}
+
+	/**
+	 * Tune the configuration for the family of the given model and store the profile. The model itself remains unchanged.
+	 * @param model representative model of the family
+	 * @return the fastest robust configuration
+	 * @throws IOException
+	 */
+	public CLPSolverConfig tune(CLP model) throws IOException {
+		double reference = Double.NaN;
+		CLP baseline = trial(model);
+		if (baseline.solve() == CLP.STATUS.OPTIMAL)
+			reference = baseline.getObjectiveValue();
+		double[] times = new double[_space.size()];
+		int best = -1;
+		for (int i=0; i<_space.size(); i++) {
+			times[i] = benchmark(model, _space.get(i), reference);
+			if (times[i] < Double.POSITIVE_INFINITY && (best < 0 || times[i] < times[best]))
+				best = i;
+		}
+		_times = times;
+		if (best < 0)
+			throw new IllegalStateException("No configuration solved the model to optimality within the time limit.");
+		CLPSolverConfig config = _space.get(best);
+		put(model.getStructureFingerprint(), config, times[best]);
+		return config;
+	}
+
+	/**
+	 * Tune the configuration for the family of the model in the given MPS file, see {@link #tune(CLP)}.
+	 * @param mps MPS file
+	 * @return the fastest robust configuration
+	 * @throws IOException
+	 */
+	public CLPSolverConfig tune(File mps) throws IOException {
+		if (!mps.canRead())
+			throw new IOException(String.format("File '%s' does not exist or cannot be read.",mps));
+		return tune(CLP.createFromMPS(mps));
+	}
+
+	/**
+	 * @return a copy of the model without basis, cache and tuner
+	 */
+	private CLP trial(CLP model) {
+		CLP trial = model.copy(false);
+		trial._basisCache = null;
+		trial.maxSeconds(_timeLimit);
+		return trial;
+	}
+
+	/**
+	 * @return median solution time in seconds or infinity if the configuration is not robust
+	 */
+	private double benchmark(CLP model, CLPSolverConfig config, double reference) {
+		double[] times = new double[_repetitions];
+		for (int k=0; k<_repetitions; k++) {
+			CLP trial = trial(model).config(config);
+			long time = System.nanoTime();
+			CLP.STATUS status = trial.solve();
+			times[k] = (System.nanoTime()-time)/1e9;
+			if (status != CLP.STATUS.OPTIMAL)
+				return Double.POSITIVE_INFINITY;
+			if (!Double.isNaN(reference) && Math.abs(trial.getObjectiveValue()-reference) > _tolerance*(1+Math.abs(reference)))
+				return Double.POSITIVE_INFINITY;
+		}
+		Arrays.sort(times);
+		return times[_repetitions/2];
+	}
+
+	/**
+	 * Median solution time of each configuration of the search space in the last call of {@link #tune(CLP)}.
+	 * @return times in seconds, infinity for configurations that are not robust
+	 */
+	public double[] getTimes() {
+		return _times;
+	}
+
+	private synchronized void put(long fingerprint, CLPSolverConfig config, double time) throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty("fingerprint", Long.toHexString(fingerprint));
+		properties.setProperty("time", Double.toString(time));
+		config.store(properties);
+		File file = new File(_dir, String.format("%016x%s", fingerprint, SUFFIX));
+		//write to a temporary file first, so that readers never see a partially written profile
+		File tmp = File.createTempFile("profile", ".tmp", _dir);
+		try {
+			try (OutputStream out = new FileOutputStream(tmp)) {
+				properties.store(out, "CLP solver profile");
+			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			tmp.delete();
+		}
+		_profiles.put(fingerprint, config);
+	}
+
+	/**
+	 * Find the profile for the family of the given model.
+	 * @param model
+	 * @return the tuned configuration or null if the family has not been tuned
+	 */
+	public CLPSolverConfig get(CLP model) {
+		return _profiles.get(model.getStructureFingerprint());
+	}
+
+	/**
+	 *
+	 * @return number of stored profiles
+	 */
+	public int size() {
+		return _profiles.size();
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.quantego.clp;
+
+/**
+ * Snapshot of a simplex basis of a {@link CLP} model, see {@link CLP#getBasis(boolean)}. The status of each variable
+ * followed by the status of each constraint is stored in one byte as in the native lib. Optionally, the primal
+ * solution of the variables and the dual solution of the constraints are stored as well. A basis can be installed
+ * into the same or any structurally identical model by {@link CLP#setBasis(CLPBasis)} to warm start the next solve.
+ * @author Nils Loehndorf
+ *
+ */
+public class CLPBasis {
+
+	/**
+	 * Status of a variable or constraint with respect to the basis.
+	 */
+	public enum STATUS {FREE,BASIC,AT_UPPER,AT_LOWER,SUPERBASIC,FIXED}
+
+	int _numCols;
+	int _numRows;
+	byte[] _status;
+	double[] _primal;
+	double[] _dual;
+
+	CLPBasis(int numCols, int numRows, byte[] status, double[] primal, double[] dual) {
+		_numCols = numCols;
+		_numRows = numRows;
+		_status = status;
+		_primal = primal;
+		_dual = dual;
+	}
+
+	/**
+	 *
+	 * @return number of variables
+	 */
+	public int getNumVariables() {
+		return _numCols;
+	}
+
+	/**
+	 *
+	 * @return number of constraints
+	 */
+	public int getNumConstraints() {
+		return _numRows;
+	}
+
+	/**
+	 *
+	 * @return true if the basis holds primal and dual solution values
+	 */
+	public boolean hasSolution() {
+		return _primal != null;
+	}
+
+	/**
+	 *
+	 * @param index variable index
+	 * @return status of the variable
+	 */
+	public STATUS getVariableStatus(int index) {
+		if (index<0 || index>=_numCols)
+			throw new IndexOutOfBoundsException(String.format("Variable index %d is out of range.",index));
+		return STATUS.values()[_status[index] & 7];
+	}
+
+	/**
+	 *
+	 * @param index constraint index
+	 * @return status of the constraint
+	 */
+	public STATUS getConstraintStatus(int index) {
+		if (index<0 || index>=_numRows)
+			throw new IndexOutOfBoundsException(String.format("Constraint index %d is out of range.",index));
+		return STATUS.values()[_status[_numCols+index] & 7];
+	}
+
+	/**
+	 *
+	 * @return number of basic variables and constraints
+	 */
+	public int getNumBasic() {
+		int count = 0;
+		for (byte status : _status)
+			if ((status & 7) == 1)
+				count++;
+		return count;
+	}
+
+}
@@ -0,0 +1,186 @@
+package com.quantego.clp;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * <p>Cache of final bases on disk, keyed by the structure fingerprint of a model, see {@link CLP#getStructureFingerprint()}.
+ * Each basis is stored in a file with a versioned header. When the cache holds more bases than its capacity,
+ * the least recently used basis is evicted. The access order is kept in the modification time of the files, so it survives
+ * restarts.</p>
+ *
+ * <p>When a cache is attached to a model with {@link CLP#basisCache(CLPBasisCache)}, the best matching basis is installed
+ * before the model is solved for the first time, and the final basis is stored after every optimal solve that changed it.
+ * A cache may be shared by models that are solved in different threads.</p>
+ * @author Nils Loehndorf
+ *
+ */
+public class CLPBasisCache {
+
+	static final int MAGIC = 0x434c5042;
+	static final int VERSION = 1;
+	//magic, version, fingerprint, number of columns, number of rows
+	static final int HEADER_SIZE = 4+4+8+4+4;
+	static final String SUFFIX = ".basis";
+
+	static class Entry {
+		long _fingerprint;
+		int _numCols;
+		int _numRows;
+		long _statusHash;
+		File _file;
+	}
+
+	File _dir;
+	int _capacity;
+	LinkedHashMap<Long,Entry> _entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * Open a cache in the given directory, which is created if necessary. Bases already stored in the directory are loaded
+	 * in the order of their last use. Files of a different format version are ignored.
+	 * @param dir directory of the cache
+	 * @param capacity maximum number of bases
+	 * @throws IOException
+	 */
+	public CLPBasisCache(File dir, int capacity) throws IOException {
+		if (capacity<1) throw new IllegalArgumentException("The capacity of the cache must be at least 1.");
+		Files.createDirectories(dir.toPath());
+		_dir = dir;
+		_capacity = capacity;
+		File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+		List<File> sorted = new ArrayList<>();
+		if (files != null)
+			for (File file : files)
+				sorted.add(file);
+		sorted.sort(Comparator.comparingLong(File::lastModified));
+		for (File file : sorted) {
+			Entry entry = readHeader(file);
+			if (entry != null)
+				_entries.put(entry._fingerprint, entry);
+		}
+		evict();
+	}
+
+	private static Entry readHeader(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE)
+				return null;
+			ByteBuffer buffer = read(channel, 0, HEADER_SIZE);
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+				return null;
+			Entry entry = new Entry();
+			entry._fingerprint = buffer.getLong();
+			entry._numCols = buffer.getInt();
+			entry._numRows = buffer.getInt();
+			entry._file = file;
+			if (channel.size() != HEADER_SIZE+(long) entry._numCols+entry._numRows)
+				return null;
+			entry._statusHash = hash(read(channel, HEADER_SIZE, entry._numCols+entry._numRows).array());
+			return entry;
+		}
+	}
+
+	/**
+	 * Read from the channel into a heap buffer, which unlike a mapping does not keep the file open after the channel is closed.
+	 */
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining())
+			if (channel.read(buffer, position+buffer.position()) < 0)
+				throw new EOFException();
+		buffer.flip();
+		return buffer;
+	}
+
+	private static long hash(byte[] status) {
+		long hash = status.length;
+		for (byte b : status)
+			hash = hash*0x9E3779B97F4A7C15L + b;
+		return hash;
+	}
+
+	private void evict() {
+		while (_entries.size() > _capacity) {
+			Long eldest = _entries.keySet().iterator().next();
+			_entries.remove(eldest)._file.delete();
+		}
+	}
+
+	/**
+	 * Find the basis of a model with the same structure fingerprint.
+	 * @param model
+	 * @return the basis or null if there is none
+	 * @throws IOException
+	 */
+	public synchronized CLPBasis get(CLP model) throws IOException {
+		Entry entry = _entries.get(model.getStructureFingerprint());
+		if (entry == null)
+			return null;
+		byte[] status;
+		try (FileChannel channel = FileChannel.open(entry._file.toPath(), StandardOpenOption.READ)) {
+			status = read(channel, HEADER_SIZE, entry._numCols+entry._numRows).array();
+		}
+		entry._file.setLastModified(System.currentTimeMillis());
+		return new CLPBasis(entry._numCols, entry._numRows, status, null, null);
+	}
+
+	/**
+	 * Store the basis of the given model. A previous basis with the same fingerprint is replaced. The file is only written
+	 * if the basis differs from the stored one.
+	 * @param model
+	 * @param basis basis of the model
+	 * @throws IOException
+	 */
+	public synchronized void put(CLP model, CLPBasis basis) throws IOException {
+		Entry entry = new Entry();
+		entry._fingerprint = model.getStructureFingerprint();
+		entry._numCols = basis._numCols;
+		entry._numRows = basis._numRows;
+		entry._statusHash = hash(basis._status);
+		entry._file = new File(_dir, String.format("%016x%s", entry._fingerprint, SUFFIX));
+		Entry previous = _entries.get(entry._fingerprint);
+		if (previous != null && previous._numCols == entry._numCols && previous._numRows == entry._numRows
+				&& previous._statusHash == entry._statusHash) {
+			previous._file.setLastModified(System.currentTimeMillis());
+			return;
+		}
+		//write to a temporary file first, so that readers never see a partially written basis
+		File tmp = File.createTempFile("basis", ".tmp", _dir);
+		try {
+			try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE)) {
+				ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE+basis._status.length);
+				buffer.putInt(MAGIC).putInt(VERSION).putLong(entry._fingerprint).putInt(entry._numCols).putInt(entry._numRows);
+				buffer.put(basis._status);
+				buffer.flip();
+				while (buffer.hasRemaining())
+					channel.write(buffer);
+				channel.force(false);
+			}
+			Files.move(tmp.toPath(), entry._file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			tmp.delete();
+		}
+		_entries.remove(entry._fingerprint);
+		_entries.put(entry._fingerprint, entry);
+		evict();
+	}
+
+	/**
+	 *
+	 * @return number of bases in the cache
+	 */
+	public synchronized int size() {
+		return _entries.size();
+	}
+
+}
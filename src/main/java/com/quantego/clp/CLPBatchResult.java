@@ -0,0 +1,104 @@
+package com.quantego.clp;
+
+/**
+ * Results of a batch of models solved by {@link CLPBatchSolver} or of the scenarios of a {@link CLPSweep}, stored in
+ * columnar arrays in the order of the models. Primal and dual solutions are only available if requested by
+ * {@link CLPBatchSolver#storePrimal(boolean)} and {@link CLPBatchSolver#storeDual(boolean)}, or the respective
+ * settings of the sweep.
+ * @author Nils Loehndorf
+ *
+ */
+public class CLPBatchResult {
+
+	CLP.STATUS[] _status;
+	double[] _objective;
+	int[] _iterations;
+	double[][] _primal;
+	double[][] _dual;
+
+	CLPBatchResult(int size, boolean primal, boolean dual) {
+		_status = new CLP.STATUS[size];
+		_objective = new double[size];
+		_iterations = new int[size];
+		if (primal)
+			_primal = new double[size][];
+		if (dual)
+			_dual = new double[size][];
+	}
+
+	/**
+	 * Results of models of the same size, whose solutions are written into arrays allocated up front.
+	 */
+	CLPBatchResult(int size, int numCols, int numRows, boolean primal, boolean dual) {
+		this(size, primal, dual);
+		if (primal)
+			_primal = new double[size][numCols];
+		if (dual)
+			_dual = new double[size][numRows];
+	}
+
+	void set(int index, CLP model, CLP.STATUS status) {
+		_status[index] = status;
+		_objective[index] = model.getObjectiveValue();
+		_iterations[index] = model.getNumIterations();
+		if (_primal != null) {
+			if (_primal[index] == null)
+				_primal[index] = new double[model.getNumVariables()];
+			model.getPrimal(_primal[index]);
+		}
+		if (_dual != null) {
+			if (_dual[index] == null)
+				_dual[index] = new double[model.getNumConstraints()];
+			model.getDuals(_dual[index]);
+		}
+	}
+
+	/**
+	 *
+	 * @return number of models
+	 */
+	public int size() {
+		return _status.length;
+	}
+
+	/**
+	 *
+	 * @return solution status of each model
+	 */
+	public CLP.STATUS[] getStatus() {
+		return _status;
+	}
+
+	/**
+	 *
+	 * @return objective value of each model
+	 */
+	public double[] getObjectiveValues() {
+		return _objective;
+	}
+
+	/**
+	 *
+	 * @return number of simplex iterations of each model
+	 */
+	public int[] getIterations() {
+		return _iterations;
+	}
+
+	/**
+	 *
+	 * @return solution values of the variables of each model or null if not stored
+	 */
+	public double[][] getPrimal() {
+		return _primal;
+	}
+
+	/**
+	 *
+	 * @return dual solution values of the constraints of each model or null if not stored
+	 */
+	public double[][] getDuals() {
+		return _dual;
+	}
+
+}
@@ -0,0 +1,138 @@
+package com.quantego.clp;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * <p>Solves batches of independent models on a fixed pool of platform threads. Each model is handled by a single worker 
+ * thread from start to end: when models are given as factories, the model is built, solved and its results are extracted 
+ * on the same thread. Workers take the next model as soon as they are done, so models of different size are balanced 
+ * across threads.</p>
+ * 
+ * <p>A {@link CLP} instance must not be used by several threads at the same time, but different instances can be solved 
+ * concurrently, since the binding to the native lib is stateless and shared by all instances.</p>
+ * @author Nils Loehndorf
+ *
+ */
+public class CLPBatchSolver implements AutoCloseable {
+
+	ExecutorService _executor;
+	int _numThreads;
+	boolean _storePrimal;
+	boolean _storeDual;
+
+	/**
+	 * Create a batch solver with as many threads as there are available processors.
+	 */
+	public CLPBatchSolver() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a batch solver.
+	 * @param numThreads number of worker threads
+	 */
+	public CLPBatchSolver(int numThreads) {
+		if (numThreads<1) throw new IllegalArgumentException("The number of threads must be at least 1.");
+		_numThreads = numThreads;
+		AtomicInteger count = new AtomicInteger();
+		_executor = Executors.newFixedThreadPool(numThreads, r -> {
+			Thread thread = new Thread(r, "clp-batch-"+count.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Store the solution values of the variables of each model (default=false).
+	 * @param on
+	 * @return builder
+	 */
+	public CLPBatchSolver storePrimal(boolean on) {
+		_storePrimal = on;
+		return this;
+	}
+
+	/**
+	 * Store the dual solution values of the constraints of each model (default=false).
+	 * @param on
+	 * @return builder
+	 */
+	public CLPBatchSolver storeDual(boolean on) {
+		_storeDual = on;
+		return this;
+	}
+
+	/**
+	 * Solve the given models.
+	 * @param models
+	 * @return results in the order of the models
+	 */
+	public CLPBatchResult solve(List<CLP> models) {
+		return solve(models.size(), models::get);
+	}
+
+	/**
+	 * Build and solve a model for each factory. Models are built on the worker threads and can be garbage collected 
+	 * as soon as their results have been stored.
+	 * @param factories
+	 * @return results in the order of the factories
+	 */
+	public CLPBatchResult solveFactories(List<? extends Supplier<CLP>> factories) {
+		return solve(factories.size(), i -> factories.get(i).get());
+	}
+
+	private CLPBatchResult solve(int size, IntFunction<CLP> models) {
+		CLPBatchResult result = new CLPBatchResult(size, _storePrimal, _storeDual);
+		AtomicInteger next = new AtomicInteger();
+		List<Future<?>> workers = new ArrayList<>();
+		for (int t=0; t<Math.min(_numThreads, size); t++)
+			workers.add(_executor.submit(() -> {
+				try {
+					int i;
+					while ((i = next.getAndIncrement()) < size) {
+						CLP model = models.apply(i);
+						result.set(i, model, model.solve());
+					}
+				} catch (RuntimeException | Error e) {
+					//stop the other workers
+					next.set(size);
+					throw e;
+				}
+			}));
+		Throwable failure = null;
+		for (Future<?> worker : workers) {
+			try {
+				worker.get();
+			} catch (ExecutionException e) {
+				if (failure == null)
+					failure = e.getCause();
+			} catch (InterruptedException e) {
+				next.set(size);
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while solving a batch of models.", e);
+			}
+		}
+		if (failure instanceof RuntimeException)
+			throw (RuntimeException) failure;
+		if (failure instanceof Error)
+			throw (Error) failure;
+		return result;
+	}
+
+	/**
+	 * Stop the worker threads.
+	 */
+	@Override
+	public void close() {
+		_executor.shutdown();
+	}
+
+}
@@ -0,0 +1,124 @@
+package com.quantego.clp;
+
+/**
+ * Holds a contiguous range of constraints of a {@link CLP} model, e.g., as returned by
+ * {@link CLP#addConstraints(int[], int[], double[], double[], double[])}. The block does not keep a handle per constraint.
+ * Right-hand sides, bounds and dual values are transferred as arrays.
+ * @author Nils Loehndorf
+ *
+ */
+public class CLPConstraintBlock {
+
+	CLP _solver;
+	int _offset;
+	int _size;
+	//type of each constraint as added, which determines the side of the right-hand side
+	CLPConstraint.TYPE[] _types;
+
+	CLPConstraintBlock(CLP solver, int offset, int size) {
+		_solver = solver;
+		_offset = offset;
+		_size = size;
+		double[] lower = solver.scratch(0, size);
+		double[] upper = solver.scratch(1, size);
+		solver.getConstraintBounds(offset, lower, upper, 0, size);
+		_types = new CLPConstraint.TYPE[size];
+		for (int i=0; i<size; i++)
+			_types[i] = CLP.getType(lower[i], upper[i]);
+	}
+
+	/**
+	 *
+	 * @return number of constraints in this block
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 *
+	 * @param i position in this block
+	 * @return row index of the i-th constraint in the model
+	 */
+	public int getIndex(int i) {
+		if (i<0 || i>=_size)
+			throw new IndexOutOfBoundsException(String.format("Position %d is out of range of a block of size %d.",i,_size));
+		return _offset+i;
+	}
+
+	/**
+	 *
+	 * @param i position in this block
+	 * @return a handle of the i-th constraint, see {@link CLP#getConstraint(int)}
+	 */
+	public CLPConstraint get(int i) {
+		return _solver.getConstraint(getIndex(i));
+	}
+
+	private void checkLength(double[] values) {
+		if (values.length!=_size)
+			throw new IllegalArgumentException(String.format("Array of size %d does not match a block of size %d.",values.length,_size));
+	}
+
+	/**
+	 * Set the right-hand sides of all constraints in this block. As in {@link CLPConstraint#setRhs(double)}, the side that 
+	 * gets updated is given by the type of each constraint when it was added, and free and ranged constraints remain unchanged.
+	 * @param values right-hand sides, one per constraint
+	 * @return builder
+	 */
+	public CLPConstraintBlock setRhs(double[] values) {
+		checkLength(values);
+		double[] lower = _solver.scratch(0, _size);
+		double[] upper = _solver.scratch(1, _size);
+		_solver.getConstraintBounds(_offset, lower, upper, 0, _size);
+		for (int i=0; i<_size; i++) {
+			double value = _solver.checkValue(values[i]);
+			switch(_types[i]) {
+			case EQ:
+				lower[i] = value;
+				upper[i] = value;
+				break;
+			case GEQ:
+				lower[i] = value;
+				break;
+			case LEQ:
+				upper[i] = value;
+				break;
+			default:
+				break;
+			}
+		}
+		_solver.setConstraintBounds(_offset, lower, upper, 0, _size);
+		return this;
+	}
+
+	/**
+	 * Set lower and upper bounds of all constraints in this block.
+	 * @param lower lower bounds, one per constraint
+	 * @param upper upper bounds, one per constraint
+	 * @return builder
+	 */
+	public CLPConstraintBlock setBounds(double[] lower, double[] upper) {
+		checkLength(lower);
+		checkLength(upper);
+		_solver.setConstraintBounds(_offset, _solver.checkValues(lower, 0), _solver.checkValues(upper, 1), 0, _size);
+		return this;
+	}
+
+	/**
+	 * Copy the dual solution values of all constraints in this block into the given array.
+	 * @param out array of the size of this block
+	 * @return out
+	 */
+	public double[] getDuals(double[] out) {
+		checkLength(out);
+		_solver.getDualSolution(_offset, out, 0, _size);
+		return out;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[%s..%s]",_solver.getConstraintName(_offset),_solver.getConstraintName(_offset+_size-1));
+	}
+
+}
@@ -1,23 +1,34 @@
 package com.quantego.clp;
 
 import java.util.Map;
-import java.util.HashMap;
 
 /**
  * Builder class to create the left-hand side of a {@link CLPConstraint}. Use {@link CLP#createExpression()} to create a new instance.
+ * A builder can be reused for many constraints by calling {@link CLPExpression#reset()} after each constraint. Builders are not 
+ * thread-safe, so keep one per thread.
  * @author Nils Loehndorf
  *
  */
 public class CLPExpression {
 	
 	CLP _solver;
-	Map<CLPVariable,Double> _terms = new HashMap<>();
+	TermMap _terms = new TermMap();
 	double _constant;
 	
 	CLPExpression(CLP solver) {
 		_solver = solver;
 	}
 	
+	/**
+	 * Remove all terms and the constant from this expression, so the builder can be reused for the next constraint.
+	 * @return builder
+	 */
+	public CLPExpression reset() {
+		_terms.clear();
+		_constant = 0;
+		return this;
+	}
+	
 	/**
 	 * Add a constant term to the expression. Terms are collected automatically.
 	 * @param value
@@ -29,16 +40,13 @@ public class CLPExpression {
 	}
 	
 	/**
-	 * Add a new term to the expression. Terms are collected automatically.
+	 * Add a new term to the expression. Terms of the same variable are collected automatically.
 	 * @param value
 	 * @param variable
 	 * @return builder
 	 */
 	public CLPExpression add(double value, CLPVariable variable) {
-		Double old;
-		if ((old = _terms.get(variable)) != null)
-			value += old.doubleValue();
-		_terms.put(variable,value);
+		_terms.add(variable._index, value);
 		return this;
 	}
 	
@@ -90,15 +98,28 @@ public class CLPExpression {
 		return this;
 	}
 	
+	/**
+	 * Add the sum of multiple terms, one per variable of the block.
+	 * @param values
+	 * @param variables
+	 * @return builder
+	 */
+	public CLPExpression add(double[] values, CLPVariableBlock variables) {
+		if (values.length != variables._size)
+			throw new IllegalArgumentException("Arrays must be of equal length.");
+		for (int i=0; i<values.length; i++)
+			_terms.add(variables._offset+i, values[i]);
+		return this;
+	}
+	
 	/**
 	 * Add the sum of multiple terms.
 	 * @param variables
 	 * @return builder
 	 */
 	public CLPExpression add(Map<CLPVariable,Double> variables) {
-		for (CLPVariable var : variables.keySet()) {
-			add(variables.get(var),var);
-		}
+		for (Map.Entry<CLPVariable,Double> term : variables.entrySet())
+			add(term.getValue(),term.getKey());
 		return this;
 	}
 	
@@ -138,6 +159,33 @@ public class CLPExpression {
 		return _solver.addConstraint(_terms, CLPConstraint.TYPE.EQ, value-_constant);
 	}
 	
+	/**
+	 * Add this expression as less-or-equal constraint to the {@link CLP} model without creating a {@link CLPConstraint}.
+	 * @param value right-hand side
+	 * @return row index of the new constraint, see {@link CLP#getConstraint(int)}
+	 */
+	public int leqRow(double value) {
+		return _solver.addRow(_terms, CLPConstraint.TYPE.LEQ, value-_constant);
+	}
+	
+	/**
+	 * Add this expression as greater-or-equal constraint to the {@link CLP} model without creating a {@link CLPConstraint}.
+	 * @param value right-hand side
+	 * @return row index of the new constraint, see {@link CLP#getConstraint(int)}
+	 */
+	public int geqRow(double value) {
+		return _solver.addRow(_terms, CLPConstraint.TYPE.GEQ, value-_constant);
+	}
+	
+	/**
+	 * Add this expression as equality constraint to the {@link CLP} model without creating a {@link CLPConstraint}.
+	 * @param value right-hand side
+	 * @return row index of the new constraint, see {@link CLP#getConstraint(int)}
+	 */
+	public int eqRow(double value) {
+		return _solver.addRow(_terms, CLPConstraint.TYPE.EQ, value-_constant);
+	}
+	
 	/**
 	 * Set this expression as objective function of the {@link CLP} model.
 	 * @return this expression as {@link CLPObjective}
@@ -149,8 +197,8 @@ public class CLPExpression {
 	@Override
 	public String toString() {
 		String str = "";
-		for (CLPVariable var : _terms.keySet()) 
-			str += CLP.termToString(_terms.get(var),var.toString())+" ";
+		for (int i=0; i<_terms.size(); i++) 
+			str += CLP.termToString(_terms._values[i],_solver.getVariableName(_terms._keys[i]))+" ";
 		str.trim();
 		if (str.startsWith("+"))
 			return str.substring(2);
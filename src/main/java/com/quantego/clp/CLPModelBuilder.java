@@ -0,0 +1,300 @@
+package com.quantego.clp;
+
+import com.quantego.clp.CLPConstraint.TYPE;
+import jnr.ffi.Memory;
+import jnr.ffi.Pointer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * <p>Builder for a model that is fully formulated before it is solved for the first time. Variables and constraints
+ * are collected in primitive arrays in Java heap. When calling {@link CLPModelBuilder#build()}, the constraint matrix
+ * is transposed in parallel into compressed sparse column format and loaded into a new {@link CLP} with a single call
+ * to the native lib, which avoids repeated reallocation of the native matrix.</p>
+ *
+ * <p>Variables and constraints are referenced by their index. Once built, the builder is frozen and cannot be modified.</p>
+ * @author Nils Loehndorf
+ *
+ */
+public class CLPModelBuilder {
+
+	static final int CHUNK_SIZE = 1<<16;
+
+	double[] _colLower = new double[16];
+	double[] _colUpper = new double[16];
+	double[] _obj = new double[16];
+	int _numCols;
+	int[] _rowStarts = new int[17];
+	double[] _rowLower = new double[16];
+	double[] _rowUpper = new double[16];
+	int _numRows;
+	int[] _columns = new int[16];
+	double[] _elements = new double[16];
+	int _numElements;
+	Map<Integer,String> _varNames = new HashMap<>();
+	Map<Integer,String> _ctrNames = new HashMap<>();
+	double _offset;
+	double _smallestElement = 1.e-20;
+	boolean _frozen;
+
+	private void checkFrozen() {
+		if (_frozen)
+			throw new IllegalStateException("The model has already been built.");
+	}
+
+	/**
+	 * Add a new variable.
+	 * @param lb lower bound
+	 * @param ub upper bound
+	 * @param obj objective coefficient
+	 * @return index of the variable
+	 */
+	public int addVariable(double lb, double ub, double obj) {
+		checkFrozen();
+		if (_numCols == _obj.length) {
+			_colLower = Arrays.copyOf(_colLower, 2*_numCols);
+			_colUpper = Arrays.copyOf(_colUpper, 2*_numCols);
+			_obj = Arrays.copyOf(_obj, 2*_numCols);
+		}
+		_colLower[_numCols] = lb;
+		_colUpper[_numCols] = ub;
+		_obj[_numCols] = obj;
+		return _numCols++;
+	}
+
+	/**
+	 * Add a new variable 0 <= x <= inf.
+	 * @param obj objective coefficient
+	 * @return index of the variable
+	 */
+	public int addVariable(double obj) {
+		return addVariable(0, Double.POSITIVE_INFINITY, obj);
+	}
+
+	/**
+	 * Add a new constraint lb <= a x <= ub.
+	 * @param columns variable indices
+	 * @param elements coefficients
+	 * @param lb lower bound
+	 * @param ub upper bound
+	 * @return index of the constraint
+	 */
+	public int addConstraint(int[] columns, double[] elements, double lb, double ub) {
+		checkFrozen();
+		if (columns.length!=elements.length) throw new IllegalArgumentException("Arrays of unequal size.");
+		if (columns.length==0) throw new IllegalArgumentException("The constraint does not contain variables.");
+		if (_numRows == _rowLower.length) {
+			_rowLower = Arrays.copyOf(_rowLower, 2*_numRows);
+			_rowUpper = Arrays.copyOf(_rowUpper, 2*_numRows);
+			_rowStarts = Arrays.copyOf(_rowStarts, 2*_numRows+1);
+		}
+		if (_numElements+columns.length > _columns.length) {
+			int capacity = Math.max(_numElements+columns.length, 2*_columns.length);
+			_columns = Arrays.copyOf(_columns, capacity);
+			_elements = Arrays.copyOf(_elements, capacity);
+		}
+		for (int col : columns)
+			if (col<0 || col>=_numCols)
+				throw new IndexOutOfBoundsException(String.format("Variable index %d is out of range.",col));
+		System.arraycopy(columns, 0, _columns, _numElements, columns.length);
+		System.arraycopy(elements, 0, _elements, _numElements, elements.length);
+		_numElements += columns.length;
+		_rowLower[_numRows] = lb;
+		_rowUpper[_numRows] = ub;
+		_rowStarts[++_numRows] = _numElements;
+		return _numRows-1;
+	}
+
+	/**
+	 * Add a new constraint of the given type.
+	 * @param columns variable indices
+	 * @param elements coefficients
+	 * @param type constraint type
+	 * @param rhs right-hand side
+	 * @return index of the constraint
+	 */
+	public int addConstraint(int[] columns, double[] elements, TYPE type, double rhs) {
+		switch(type) {
+		case EQ:
+			return addConstraint(columns, elements, rhs, rhs);
+		case GEQ:
+			return addConstraint(columns, elements, rhs, Double.POSITIVE_INFINITY);
+		case LEQ:
+			return addConstraint(columns, elements, Double.NEGATIVE_INFINITY, rhs);
+		default:
+			return addConstraint(columns, elements, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+		}
+	}
+
+	/**
+	 * Set objective constant term.
+	 * @param value
+	 * @return builder
+	 */
+	public CLPModelBuilder objectiveOffset(double value) {
+		checkFrozen();
+		_offset = value;
+		return this;
+	}
+
+	/**
+	 * Set the smallest coefficient value considered as non-zero (default = 1.e-20). All values smaller than this will be set to zero.
+	 * See {@link CLP#smallestCoefficient(double)}.
+	 * @param value
+	 * @return builder
+	 */
+	public CLPModelBuilder smallestCoefficient(double value) {
+		checkFrozen();
+		if (value<0)
+			throw new IllegalArgumentException("The smallest coefficient must be >= 0");
+		_smallestElement = value;
+		return this;
+	}
+
+	/**
+	 *
+	 * @param index variable index
+	 * @param name
+	 * @return builder
+	 */
+	public CLPModelBuilder variableName(int index, String name) {
+		checkFrozen();
+		_varNames.put(index, name);
+		return this;
+	}
+
+	/**
+	 *
+	 * @param index constraint index
+	 * @param name
+	 * @return builder
+	 */
+	public CLPModelBuilder constraintName(int index, String name) {
+		checkFrozen();
+		_ctrNames.put(index, name);
+		return this;
+	}
+
+	/**
+	 *
+	 * @return number of variables
+	 */
+	public int getNumVariables() {
+		return _numCols;
+	}
+
+	/**
+	 *
+	 * @return number of constraints
+	 */
+	public int getNumConstraints() {
+		return _numRows;
+	}
+
+	/**
+	 * Transpose the constraint matrix into compressed sparse column format. Chunks of rows are processed in parallel.
+	 * Each chunk counts the nonzeros per column, so that every chunk can write its part of each column into
+	 * a disjoint range, which keeps the row indices within each column sorted.
+	 * @param colStarts output array of size number of columns + 1
+	 * @param rows output array of size number of nonzeros
+	 * @param values output array of size number of nonzeros
+	 */
+	void transpose(int[] colStarts, int[] rows, double[] values) {
+		transpose(colStarts, rows, values, CHUNK_SIZE);
+	}
+
+	/**
+	 * @param chunkSize minimum number of nonzeros per chunk
+	 */
+	void transpose(final int[] colStarts, final int[] rows, final double[] values, int chunkSize) {
+		//each chunk holds a count per column, so the counts of all chunks together take no more memory than the column indices
+		final int numChunks = Math.max(1, Math.min(4*Runtime.getRuntime().availableProcessors(),
+				Math.min(_numElements/chunkSize, _numElements/Math.max(1, _numCols))));
+		final int[] chunkRows = new int[numChunks+1];
+		for (int c=0; c<=numChunks; c++)
+			chunkRows[c] = (int) ((long) _numRows * c / numChunks);
+		final int[][] offsets = new int[numChunks][];
+		IntStream.range(0, numChunks).parallel().forEach(c -> {
+			int[] counts = new int[_numCols];
+			for (int k=_rowStarts[chunkRows[c]]; k<_rowStarts[chunkRows[c+1]]; k++)
+				counts[_columns[k]]++;
+			offsets[c] = counts;
+		});
+		int pos = 0;
+		for (int col=0; col<_numCols; col++) {
+			colStarts[col] = pos;
+			for (int c=0; c<numChunks; c++) {
+				int count = offsets[c][col];
+				offsets[c][col] = pos;
+				pos += count;
+			}
+		}
+		colStarts[_numCols] = pos;
+		IntStream.range(0, numChunks).parallel().forEach(c -> {
+			int[] next = offsets[c];
+			for (int row=chunkRows[c]; row<chunkRows[c+1]; row++) {
+				for (int k=_rowStarts[row]; k<_rowStarts[row+1]; k++) {
+					int p = next[_columns[k]]++;
+					rows[p] = row;
+					values[p] = _elements[k];
+				}
+			}
+		});
+	}
+
+	/**
+	 * Load the model into a new {@link CLP} instance with a single call to the native lib. The builder is frozen afterwards.
+	 * @return the model
+	 */
+	public CLP build() {
+		checkFrozen();
+		_frozen = true;
+		int[] colStarts = new int[_numCols+1];
+		int[] rows = new int[_numElements];
+		double[] values = new double[_numElements];
+		transpose(colStarts, rows, values);
+		CLP clp = new CLP().smallestCoefficient(_smallestElement);
+		Pointer rowLower = toPointer(clp, _rowLower, _numRows);
+		Pointer rowUpper = toPointer(clp, _rowUpper, _numRows);
+		Pointer colLower = toPointer(clp, _colLower, _numCols);
+		Pointer colUpper = toPointer(clp, _colUpper, _numCols);
+		CLP.NATIVE.Clp_loadProblem(clp._model, _numCols, _numRows,
+				CLP.arrayToPointer(colStarts),
+				CLP.arrayToPointer(rows),
+				toPointer(clp, values, _numElements),
+				colLower, colUpper,
+				toPointer(clp, _obj, _numCols),
+				rowLower, rowUpper);
+		clp.readNativeModel();
+		//restore infinite bounds which are truncated by the native lib
+		if (_numRows > 0) {
+			rowLower.transferTo(0, clp._rowLower, 0, _numRows*Double.BYTES);
+			rowUpper.transferTo(0, clp._rowUpper, 0, _numRows*Double.BYTES);
+		}
+		if (_numCols > 0) {
+			colLower.transferTo(0, clp._colLower, 0, _numCols*Double.BYTES);
+			colUpper.transferTo(0, clp._colUpper, 0, _numCols*Double.BYTES);
+		}
+		clp._varNames.putAll(_varNames);
+		clp._ctrNames.putAll(_ctrNames);
+		clp.setObjectiveOffset(_offset);
+		_columns = null;
+		_elements = null;
+		return clp;
+	}
+
+	/**
+	 * Write the first values of the array into native memory, with small values set to zero as by {@link CLP#checkValue(double)}.
+	 */
+	private static Pointer toPointer(CLP clp, double[] array, int length) {
+		for (int i=0; i<length; i++)
+			array[i] = clp.checkValue(array[i]);
+		Pointer pointer = Memory.allocateDirect(CLP.RUNTIME, length*Double.BYTES);
+		pointer.put(0, array, 0, length);
+		return pointer;
+	}
+
+}
@@ -326,12 +326,12 @@ public interface CLPNative {
 	 * Original signature : <code>char* Clp_statusArray(Clp_Simplex*)</code><br>
 	 * <i>native declaration : line 252</i>
 	 */
-	String Clp_statusArray(Pointer model);
+	Pointer Clp_statusArray(Pointer model);
 	/**
 	 * Original signature : <code>void Clp_copyinStatus(Clp_Simplex*, const unsigned char*)</code><br>
 	 * <i>native declaration : line 254</i>
 	 */
-	void Clp_copyinStatus(Pointer model, String statusArray);
+	void Clp_copyinStatus(Pointer model, Pointer statusArray);
 	/**
 	 * Original signature : <code>int Clp_getColumnStatus(Clp_Simplex*, int)</code><br>
 	 * <i>native declaration : line 258</i>
@@ -832,6 +832,24 @@ public interface CLPNative {
 	 * <i>native declaration : line 519</i>
 	 */
 	void ClpSolve_setSubstitution(Pointer Clp_SolvePtr1, int value);
+	
+	/**
+	 * Callback of the message handler, invoked for every message that gets printed at the current log level.<br>
+	 * Original signature : <code>void (*clp_callback)(Clp_Simplex*, int, int, const double*, int, const int*, int, char**)</code><br>
+	 */
+	interface Callback {
+		@jnr.ffi.annotations.Delegate
+		void invoke(Pointer model, int msgno, int ndouble, Pointer dvec, int nint, Pointer ivec, int nchar, Pointer cvec);
+	}
+	/**
+	 * Original signature : <code>void Clp_registerCallBack(Clp_Simplex*, clp_callback)</code><br>
+	 */
+	void Clp_registerCallBack(Pointer model, Callback callback);
+	/**
+	 * Deletes the message handler of the callback while the model keeps using it, so the model must not print 
+	 * any further messages.<br>
+	 * Original signature : <code>void Clp_clearCallBack(Clp_Simplex*)</code><br>
+	 */
+	void Clp_clearCallBack(Pointer model);
 
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,21 @@
+package com.quantego.clp;
+
+/**
+ * Listener for the progress of the simplex, see {@link CLP#progressListener(CLPProgressListener, int)}. 
+ * The listener is called on the thread that solves the model.
+ * @author Nils Loehndorf
+ *
+ */
+public interface CLPProgressListener {
+
+	/**
+	 * Called with the status of the simplex.
+	 * @param iteration number of iterations so far
+	 * @param objective current objective value
+	 * @param sumPrimalInfeasibilities sum of primal infeasibilities
+	 * @param sumDualInfeasibilities sum of dual infeasibilities
+	 * @return false to stop the solve
+	 */
+	boolean progress(int iteration, double objective, double sumPrimalInfeasibilities, double sumDualInfeasibilities);
+
+}
@@ -0,0 +1,253 @@
+package com.quantego.clp;
+
+import jnr.ffi.Pointer;
+
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * Configuration of the solution process of a {@link CLP} model, which can be applied with {@link CLP#config(CLPSolverConfig)},
+ * raced against other configurations with {@link CLP#solveRacing(CLPSolverConfig...)}, or chosen by a {@link CLPAutotuner}.
+ * The algorithm, presolve and the presolve techniques apply to solves from scratch, while resolves after changes of an
+ * optimal model follow the resolve strategy of {@link CLP#solve()}. Tolerances that are not set keep the value of the model.
+ * @author Nils Loehndorf
+ *
+ */
+public class CLPSolverConfig {
+
+	/**
+	 * Presolve techniques that can be switched off individually.
+	 */
+	public enum PRESOLVE {
+		DUAL, SINGLETON, DOUBLETON, TRIPLETON, TIGHTEN, FORCING, IMPLIED_FREE, DUPCOL, DUPROW, SINGLETON_COLUMN
+	}
+
+	//switches of a new native solve object
+	static int[] DEFAULT_SWITCHES;
+
+	CLP.ALGORITHM _algorithm = CLP.ALGORITHM.AUTO;
+	CLP.SCALING _scaling = CLP.SCALING.OFF;
+	boolean _presolve = true;
+	EnumSet<PRESOLVE> _disabled = EnumSet.noneOf(PRESOLVE.class);
+	double _primalTolerance = Double.NaN;
+	double _dualTolerance = Double.NaN;
+
+	/**
+	 * Set the solution {@link CLP.ALGORITHM} (default=AUTO).
+	 * @param algorithm
+	 * @return builder
+	 */
+	public CLPSolverConfig algorithm(CLP.ALGORITHM algorithm) {
+		_algorithm = algorithm;
+		return this;
+	}
+
+	/**
+	 * Set the parameter {@link CLP.SCALING} (default=OFF).
+	 * @param scaling
+	 * @return builder
+	 */
+	public CLPSolverConfig scaling(CLP.SCALING scaling) {
+		_scaling = scaling;
+		return this;
+	}
+
+	/**
+	 * Turn presolve on (default=true).
+	 * @param on
+	 * @return builder
+	 */
+	public CLPSolverConfig presolve(boolean on) {
+		_presolve = on;
+		return this;
+	}
+
+	/**
+	 * Switch off the given presolve techniques. All other techniques keep their default.
+	 * @param techniques
+	 * @return builder
+	 */
+	public CLPSolverConfig disable(PRESOLVE... techniques) {
+		for (PRESOLVE technique : techniques)
+			_disabled.add(technique);
+		return this;
+	}
+
+	/**
+	 * Set the primal tolerance.
+	 * @param value
+	 * @return builder
+	 */
+	public CLPSolverConfig primalTolerance(double value) {
+		_primalTolerance = value;
+		return this;
+	}
+
+	/**
+	 * Set the dual tolerance.
+	 * @param value
+	 * @return builder
+	 */
+	public CLPSolverConfig dualTolerance(double value) {
+		_dualTolerance = value;
+		return this;
+	}
+
+	/**
+	 *
+	 * @return solution algorithm
+	 */
+	public CLP.ALGORITHM getAlgorithm() {
+		return _algorithm;
+	}
+
+	/**
+	 *
+	 * @return parameter scaling
+	 */
+	public CLP.SCALING getScaling() {
+		return _scaling;
+	}
+
+	/**
+	 *
+	 * @return whether presolve is on
+	 */
+	public boolean getPresolve() {
+		return _presolve;
+	}
+
+	/**
+	 *
+	 * @return presolve techniques that are switched off
+	 */
+	public EnumSet<PRESOLVE> getDisabled() {
+		return EnumSet.copyOf(_disabled);
+	}
+
+	/**
+	 *
+	 * @return primal tolerance or NaN if not set
+	 */
+	public double getPrimalTolerance() {
+		return _primalTolerance;
+	}
+
+	/**
+	 *
+	 * @return dual tolerance or NaN if not set
+	 */
+	public double getDualTolerance() {
+		return _dualTolerance;
+	}
+
+	void apply(CLP model) {
+		//an explicit algorithm would bypass presolve, so only the algorithm of initial solves is set
+		model.solveType(_algorithm);
+		model._algorithm = null;
+		model.scaling(_scaling).presolve(_presolve);
+		if (!Double.isNaN(_primalTolerance))
+			model.primalTolerance(_primalTolerance);
+		if (!Double.isNaN(_dualTolerance))
+			model.dualTolerance(_dualTolerance);
+		int[] defaults = defaultSwitches();
+		for (PRESOLVE technique : PRESOLVE.values())
+			setSwitch(model._solve, technique, _disabled.contains(technique) ? 0 : defaults[technique.ordinal()]);
+	}
+
+	private static synchronized int[] defaultSwitches() {
+		if (DEFAULT_SWITCHES == null) {
+			Pointer solve = CLP.NATIVE.ClpSolve_new();
+			DEFAULT_SWITCHES = new int[PRESOLVE.values().length];
+			for (PRESOLVE technique : PRESOLVE.values())
+				DEFAULT_SWITCHES[technique.ordinal()] = getSwitch(solve, technique);
+			CLP.NATIVE.ClpSolve_delete(solve);
+		}
+		return DEFAULT_SWITCHES;
+	}
+
+	static int getSwitch(Pointer solve, PRESOLVE technique) {
+		switch (technique) {
+		case DUAL: return CLP.NATIVE.ClpSolve_doDual(solve);
+		case SINGLETON: return CLP.NATIVE.ClpSolve_doSingleton(solve);
+		case DOUBLETON: return CLP.NATIVE.ClpSolve_doDoubleton(solve);
+		case TRIPLETON: return CLP.NATIVE.ClpSolve_doTripleton(solve);
+		case TIGHTEN: return CLP.NATIVE.ClpSolve_doTighten(solve);
+		case FORCING: return CLP.NATIVE.ClpSolve_doForcing(solve);
+		case IMPLIED_FREE: return CLP.NATIVE.ClpSolve_doImpliedFree(solve);
+		case DUPCOL: return CLP.NATIVE.ClpSolve_doDupcol(solve);
+		case DUPROW: return CLP.NATIVE.ClpSolve_doDuprow(solve);
+		default: return CLP.NATIVE.ClpSolve_doSingletonColumn(solve);
+		}
+	}
+
+	private static void setSwitch(Pointer solve, PRESOLVE technique, int value) {
+		switch (technique) {
+		case DUAL: CLP.NATIVE.ClpSolve_setDoDual(solve, value); break;
+		case SINGLETON: CLP.NATIVE.ClpSolve_setDoSingleton(solve, value); break;
+		case DOUBLETON: CLP.NATIVE.ClpSolve_setDoDoubleton(solve, value); break;
+		case TRIPLETON: CLP.NATIVE.ClpSolve_setDoTripleton(solve, value); break;
+		case TIGHTEN: CLP.NATIVE.ClpSolve_setDoTighten(solve, value); break;
+		case FORCING: CLP.NATIVE.ClpSolve_setDoForcing(solve, value); break;
+		case IMPLIED_FREE: CLP.NATIVE.ClpSolve_setDoImpliedFree(solve, value); break;
+		case DUPCOL: CLP.NATIVE.ClpSolve_setDoDupcol(solve, value); break;
+		case DUPROW: CLP.NATIVE.ClpSolve_setDoDuprow(solve, value); break;
+		default: CLP.NATIVE.ClpSolve_setDoSingletonColumn(solve, value); break;
+		}
+	}
+
+	void store(Properties properties) {
+		properties.setProperty("algorithm", _algorithm.name());
+		properties.setProperty("scaling", _scaling.name());
+		properties.setProperty("presolve", Boolean.toString(_presolve));
+		StringBuilder disabled = new StringBuilder();
+		for (PRESOLVE technique : _disabled)
+			disabled.append(disabled.length() > 0 ? "," : "").append(technique.name());
+		properties.setProperty("disabled", disabled.toString());
+		properties.setProperty("primalTolerance", Double.toString(_primalTolerance));
+		properties.setProperty("dualTolerance", Double.toString(_dualTolerance));
+	}
+
+	static CLPSolverConfig load(Properties properties) {
+		CLPSolverConfig config = new CLPSolverConfig()
+				.algorithm(CLP.ALGORITHM.valueOf(properties.getProperty("algorithm")))
+				.scaling(CLP.SCALING.valueOf(properties.getProperty("scaling")))
+				.presolve(Boolean.parseBoolean(properties.getProperty("presolve")))
+				.primalTolerance(Double.parseDouble(properties.getProperty("primalTolerance")))
+				.dualTolerance(Double.parseDouble(properties.getProperty("dualTolerance")));
+		for (String technique : properties.getProperty("disabled").split(","))
+			if (!technique.isEmpty())
+				config.disable(PRESOLVE.valueOf(technique));
+		return config;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof CLPSolverConfig))
+			return false;
+		CLPSolverConfig config = (CLPSolverConfig) obj;
+		return _algorithm == config._algorithm && _scaling == config._scaling && _presolve == config._presolve
+				&& _disabled.equals(config._disabled)
+				&& Double.compare(_primalTolerance, config._primalTolerance) == 0
+				&& Double.compare(_dualTolerance, config._dualTolerance) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(_algorithm, _scaling, _presolve, _disabled, _primalTolerance, _dualTolerance);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(String.format("algorithm=%s, scaling=%s, presolve=%s",_algorithm,_scaling,_presolve));
+		if (!_disabled.isEmpty())
+			sb.append(", disabled=").append(_disabled);
+		if (!Double.isNaN(_primalTolerance))
+			sb.append(", primalTolerance=").append(_primalTolerance);
+		if (!Double.isNaN(_dualTolerance))
+			sb.append(", dualTolerance=").append(_dualTolerance);
+		return sb.toString();
+	}
+
+}
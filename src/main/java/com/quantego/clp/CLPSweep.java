@@ -0,0 +1,430 @@
+package com.quantego.clp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>Parametric sweep over scenarios of right-hand sides and bounds of a model with fixed structure. Each scenario assigns
+ * a value to every parameter of the sweep, where a parameter is the right-hand side or a bound of a constraint, or a bound
+ * of a variable. Scenarios are given in columnar form, i.e., one array of values per parameter.</p>
+ *
+ * <p>The scenarios are ordered such that each scenario follows its nearest neighbour in terms of the Euclidean distance
+ * of the parameter values. The ordered scenarios are partitioned into contiguous chunks, one per thread, and with several
+ * threads each chunk is solved on a copy of the model. The first scenario of a chunk starts from the basis of the model,
+ * and every scenario after an optimal one is resolved with the dual simplex from the final basis of the previous one.
+ * Results are written into arrays that are allocated once before the sweep.</p>
+ * @author Nils Loehndorf
+ *
+ */
+public class CLPSweep {
+
+	static final int ROW_LOWER = 1;
+	static final int ROW_UPPER = 2;
+	static final int COL_LOWER = 4;
+	static final int COL_UPPER = 8;
+	//a single mapping is limited to 2GB, so each parameter is mapped in blocks of 2^27 values
+	static final int MAPPING_SHIFT = 27;
+
+	interface Scenarios {
+		double get(int parameter, int scenario);
+	}
+
+	CLP _model;
+	int[] _kinds = new int[0];
+	int[] _indices = new int[0];
+	int _numThreads = 1;
+	boolean _order = true;
+	boolean _storePrimal;
+	boolean _storeDual;
+	int[] _lastOrder;
+
+	/**
+	 * Create a sweep over the given model. With a single thread, the scenarios are solved on the model itself, whose bounds
+	 * are restored after the sweep, so that only its basis and solution are those of the last scenario. With several
+	 * threads, the model is not modified by the sweep.
+	 * @param model
+	 */
+	public CLPSweep(CLP model) {
+		_model = model;
+	}
+
+	/**
+	 * Add the right-hand sides of the given constraints as parameters. The right-hand side is the upper bound of a
+	 * less-or-equal constraint, the lower bound of a greater-or-equal constraint, and both bounds of an equality.
+	 * @param rows constraint indices
+	 * @return builder
+	 */
+	public CLPSweep rhs(int... rows) {
+		int[] kinds = new int[rows.length];
+		for (int k=0; k<rows.length; k++) {
+			switch (_model.getConstraint(rows[k])._type) {
+			case LEQ:
+				kinds[k] = ROW_UPPER;
+				break;
+			case GEQ:
+				kinds[k] = ROW_LOWER;
+				break;
+			case EQ:
+				kinds[k] = ROW_LOWER | ROW_UPPER;
+				break;
+			default:
+				throw new IllegalArgumentException(String.format("Constraint %d has no unique right-hand side.",rows[k]));
+			}
+		}
+		return add(kinds, rows);
+	}
+
+	/**
+	 * Add the lower bounds of the given constraints as parameters.
+	 * @param rows constraint indices
+	 * @return builder
+	 */
+	public CLPSweep constraintLowerBounds(int... rows) {
+		return add(ROW_LOWER, rows, _model.getNumConstraints(), "Constraint");
+	}
+
+	/**
+	 * Add the upper bounds of the given constraints as parameters.
+	 * @param rows constraint indices
+	 * @return builder
+	 */
+	public CLPSweep constraintUpperBounds(int... rows) {
+		return add(ROW_UPPER, rows, _model.getNumConstraints(), "Constraint");
+	}
+
+	/**
+	 * Add the lower bounds of the given variables as parameters.
+	 * @param cols variable indices
+	 * @return builder
+	 */
+	public CLPSweep variableLowerBounds(int... cols) {
+		return add(COL_LOWER, cols, _model.getNumVariables(), "Variable");
+	}
+
+	/**
+	 * Add the upper bounds of the given variables as parameters.
+	 * @param cols variable indices
+	 * @return builder
+	 */
+	public CLPSweep variableUpperBounds(int... cols) {
+		return add(COL_UPPER, cols, _model.getNumVariables(), "Variable");
+	}
+
+	private CLPSweep add(int kind, int[] indices, int size, String name) {
+		int[] kinds = new int[indices.length];
+		for (int k=0; k<indices.length; k++) {
+			if (indices[k]<0 || indices[k]>=size)
+				throw new IndexOutOfBoundsException(String.format("%s index %d is out of range.",name,indices[k]));
+			kinds[k] = kind;
+		}
+		return add(kinds, indices);
+	}
+
+	private CLPSweep add(int[] kinds, int[] indices) {
+		int n = _kinds.length;
+		_kinds = Arrays.copyOf(_kinds, n+kinds.length);
+		_indices = Arrays.copyOf(_indices, n+indices.length);
+		System.arraycopy(kinds, 0, _kinds, n, kinds.length);
+		System.arraycopy(indices, 0, _indices, n, indices.length);
+		return this;
+	}
+
+	/**
+	 * Set the number of threads, each of which solves a copy of the model (default=1).
+	 * @param numThreads
+	 * @return builder
+	 */
+	public CLPSweep threads(int numThreads) {
+		if (numThreads<1) throw new IllegalArgumentException("The number of threads must be at least 1.");
+		_numThreads = numThreads;
+		return this;
+	}
+
+	/**
+	 * Order the scenarios by nearest neighbours (default=true). The ordering takes quadratic time in the number of
+	 * scenarios, so it can be turned off for very large sweeps or when the scenarios are already ordered.
+	 * @param on
+	 * @return builder
+	 */
+	public CLPSweep order(boolean on) {
+		_order = on;
+		return this;
+	}
+
+	/**
+	 * Store the solution values of the variables of each scenario (default=false).
+	 * @param on
+	 * @return builder
+	 */
+	public CLPSweep storePrimal(boolean on) {
+		_storePrimal = on;
+		return this;
+	}
+
+	/**
+	 * Store the dual solution values of the constraints of each scenario (default=false).
+	 * @param on
+	 * @return builder
+	 */
+	public CLPSweep storeDual(boolean on) {
+		_storeDual = on;
+		return this;
+	}
+
+	/**
+	 *
+	 * @return number of parameters of each scenario
+	 */
+	public int getNumParameters() {
+		return _kinds.length;
+	}
+
+	/**
+	 * Solve the scenarios given in columnar form.
+	 * @param values array of values of each parameter, all of the same length
+	 * @return results in the order of the scenarios
+	 */
+	public CLPBatchResult solve(double[][] values) {
+		if (values.length != _kinds.length)
+			throw new IllegalArgumentException(String.format("Expected values of %d parameters but got %d.",_kinds.length,values.length));
+		int size = values.length == 0 ? 0 : values[0].length;
+		for (double[] column : values)
+			if (column.length != size)
+				throw new IllegalArgumentException("All parameters must have the same number of scenarios.");
+		return solve(size, (p, s) -> values[p][s]);
+	}
+
+	/**
+	 * Solve the scenarios stored in a file, which is memory-mapped instead of read into memory. The file holds the
+	 * values in columnar form as doubles in big-endian byte order: the values of the first parameter for all scenarios,
+	 * followed by the values of the second parameter, and so on.
+	 * @param file
+	 * @return results in the order of the scenarios
+	 * @throws IOException
+	 */
+	public CLPBatchResult solve(File file) throws IOException {
+		if (_kinds.length == 0)
+			throw new IllegalStateException("The sweep has no parameters.");
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long bytes = (long) _kinds.length*Double.BYTES;
+			if (channel.size() % bytes != 0)
+				throw new IllegalArgumentException(String.format("The size of file '%s' is not a multiple of %d parameters.",file,_kinds.length));
+			int size = (int) (channel.size()/bytes);
+			return solve(size, map(channel, _kinds.length, size, MAPPING_SHIFT));
+		}
+	}
+
+	/**
+	 * Map the columns of the file in blocks of 2^shift values, so that files may exceed the size of a single mapping.
+	 */
+	static Scenarios map(FileChannel channel, int numParameters, int size, int shift) throws IOException {
+		int block = 1 << shift;
+		int numBlocks = (int) (((long) size+block-1) >> shift);
+		DoubleBuffer[][] columns = new DoubleBuffer[numParameters][numBlocks];
+		for (int p=0; p<numParameters; p++) {
+			for (int b=0; b<numBlocks; b++) {
+				long from = (long) b << shift;
+				long length = Math.min(block, size-from);
+				columns[p][b] = channel.map(FileChannel.MapMode.READ_ONLY, ((long) p*size+from)*Double.BYTES, length*Double.BYTES).asDoubleBuffer();
+			}
+		}
+		int mask = block-1;
+		return (p, s) -> columns[p][s >>> shift].get(s & mask);
+	}
+
+	/**
+	 * Order in which the scenarios were solved in the last sweep. Each thread solved a contiguous chunk of this order.
+	 * @return scenario indices
+	 */
+	public int[] getOrder() {
+		return _lastOrder;
+	}
+
+	CLPBatchResult solve(int size, Scenarios scenarios) {
+		int numCols = _model.getNumVariables();
+		int numRows = _model.getNumConstraints();
+		CLPBatchResult result = new CLPBatchResult(size, numCols, numRows, _storePrimal, _storeDual);
+		int[] order = _order ? order(size, scenarios) : identity(size);
+		_lastOrder = order;
+		int numThreads = Math.min(_numThreads, size);
+		AtomicBoolean stopped = new AtomicBoolean();
+		if (numThreads <= 1) {
+			double[][] bounds = getBounds(_model);
+			CLPBasisCache cache = _model._basisCache;
+			_model._basisCache = null;
+			try {
+				solve(_model, order, 0, size, scenarios, result, stopped);
+			} finally {
+				setBounds(_model, bounds);
+				_model._basisCache = cache;
+			}
+			return result;
+		}
+		int chunk = (size+numThreads-1)/numThreads;
+		Thread[] threads = new Thread[numThreads];
+		CLP[] models = new CLP[numThreads];
+		Throwable[] failures = new Throwable[numThreads];
+		for (int t=0; t<numThreads; t++) {
+			int index = t;
+			//copies are created on the calling thread, since the model must not be used by several threads at the same time
+			CLP model = models[t] = copy();
+			threads[t] = new Thread(() -> {
+				try {
+					solve(model, order, index*chunk, Math.min(size, (index+1)*chunk), scenarios, result, stopped);
+				} catch (RuntimeException | Error e) {
+					failures[index] = e;
+					stop(models, stopped);
+				}
+			}, "clp-sweep-"+t);
+			threads[t].setDaemon(true);
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				stop(models, stopped);
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while solving a sweep.", e);
+			}
+		}
+		for (Throwable failure : failures) {
+			if (failure instanceof RuntimeException)
+				throw (RuntimeException) failure;
+			if (failure instanceof Error)
+				throw (Error) failure;
+		}
+		return result;
+	}
+
+	/**
+	 * Stop the other workers, including their running solves.
+	 */
+	private static void stop(CLP[] models, AtomicBoolean stopped) {
+		stopped.set(true);
+		for (CLP model : models)
+			if (model != null)
+				model.requestStop();
+	}
+
+	/**
+	 * @return lower and upper bounds of the constraint or variable of each parameter
+	 */
+	private double[][] getBounds(CLP model) {
+		double[][] bounds = new double[2][_kinds.length];
+		for (int p=0; p<_kinds.length; p++) {
+			if ((_kinds[p] & (ROW_LOWER | ROW_UPPER)) != 0)
+				model.getConstraintBounds(_indices[p], bounds[0], bounds[1], p, 1);
+			else
+				model.getVariableBounds(_indices[p], bounds[0], bounds[1], p, 1);
+		}
+		return bounds;
+	}
+
+	private void setBounds(CLP model, double[][] bounds) {
+		//in reverse order, so that the original bounds are restored if a constraint or variable occurs more than once
+		for (int p=_kinds.length-1; p>=0; p--) {
+			if ((_kinds[p] & (ROW_LOWER | ROW_UPPER)) != 0)
+				model.setConstraintBounds(_indices[p], bounds[0], bounds[1], p, 1);
+			else {
+				model.setVariableLowerBounds(_indices[p], bounds[0], p, 1);
+				model.setVariableUpperBounds(_indices[p], bounds[1], p, 1);
+			}
+		}
+	}
+
+	private CLP copy() {
+		CLP model = _model.copy();
+		model._basisCache = null;
+		return model;
+	}
+
+	/**
+	 * Solve a chunk of scenarios on the given model, each one warm started from the basis of the previous one.
+	 */
+	private void solve(CLP model, int[] order, int from, int to, Scenarios scenarios, CLPBatchResult result, AtomicBoolean stopped) {
+		CLPConstraint[] constraints = new CLPConstraint[_kinds.length];
+		CLPVariable[] variables = new CLPVariable[_kinds.length];
+		for (int p=0; p<_kinds.length; p++) {
+			if ((_kinds[p] & (ROW_LOWER | ROW_UPPER)) != 0)
+				constraints[p] = model.getConstraint(_indices[p]);
+			else
+				variables[p] = new CLPVariable(model, _indices[p]);
+		}
+		CLP.ALGORITHM algorithm = model._algorithm;
+		try {
+			for (int k=from; k<to && !stopped.get(); k++) {
+				int s = order[k];
+				for (int p=0; p<_kinds.length; p++) {
+					double value = scenarios.get(p, s);
+					if ((_kinds[p] & ROW_LOWER) != 0)
+						model.setConstraintLowerBound(constraints[p], value);
+					if ((_kinds[p] & ROW_UPPER) != 0)
+						model.setConstraintUpperBound(constraints[p], value);
+					if ((_kinds[p] & COL_LOWER) != 0)
+						model.setVariableLowerBound(variables[p], value);
+					if ((_kinds[p] & COL_UPPER) != 0)
+						model.setVariableUpperBound(variables[p], value);
+				}
+				CLP.STATUS status = model.solve();
+				result.set(s, model, status);
+				//bound changes keep an optimal basis dual feasible, so the next scenario is resolved by the dual simplex,
+				//while any other outcome leaves no such basis and the algorithm of the caller is used
+				model._algorithm = status == CLP.STATUS.OPTIMAL ? CLP.ALGORITHM.DUAL : algorithm;
+			}
+		} finally {
+			model._algorithm = algorithm;
+		}
+	}
+
+	private static int[] identity(int size) {
+		int[] order = new int[size];
+		for (int s=0; s<size; s++)
+			order[s] = s;
+		return order;
+	}
+
+	/**
+	 * Greedy nearest neighbour ordering starting from the first scenario.
+	 */
+	private int[] order(int size, Scenarios scenarios) {
+		int[] order = new int[size];
+		if (size == 0)
+			return order;
+		int[] rest = identity(size);
+		double[] distance = new double[size];
+		int remaining = size-1;
+		int current = 0;
+		rest[0] = rest[remaining];
+		for (int k=1; k<size; k++) {
+			order[k-1] = current;
+			Arrays.fill(distance, 0, remaining, 0);
+			//accumulate one parameter at a time, which reads the columns sequentially
+			for (int p=0; p<_kinds.length; p++) {
+				double value = scenarios.get(p, current);
+				for (int j=0; j<remaining; j++) {
+					double other = scenarios.get(p, rest[j]);
+					if (other != value) {
+						double diff = other-value;
+						//differences between finite and infinite bounds yield an infinite distance
+						distance[j] += diff*diff;
+					}
+				}
+			}
+			int next = 0;
+			for (int j=1; j<remaining; j++)
+				if (distance[j] < distance[next])
+					next = j;
+			current = rest[next];
+			rest[next] = rest[--remaining];
+		}
+		order[size-1] = current;
+		return order;
+	}
+
+}
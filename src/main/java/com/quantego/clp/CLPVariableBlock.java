@@ -0,0 +1,116 @@
+package com.quantego.clp;
+
+/**
+ * Holds a contiguous range of variables of a {@link CLP} model, e.g., as returned by {@link CLPVariableSet#buildBlock()} or
+ * {@link CLP#addColumns(int[], int[], double[], double[], double[], double[])}. The block does not keep a handle per variable.
+ * Bounds, objective coefficients and solution values are transferred as arrays and names are computed when needed.
+ * @author Nils Loehndorf
+ *
+ */
+public class CLPVariableBlock {
+
+	CLP _solver;
+	int _offset;
+	int _size;
+	String _name;
+
+	CLPVariableBlock(CLP solver, int offset, int size) {
+		_solver = solver;
+		_offset = offset;
+		_size = size;
+	}
+
+	/**
+	 *
+	 * @return number of variables in this block
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 *
+	 * @param i position in this block
+	 * @return column index of the i-th variable in the model
+	 */
+	public int getIndex(int i) {
+		if (i<0 || i>=_size)
+			throw new IndexOutOfBoundsException(String.format("Position %d is out of range of a block of size %d.",i,_size));
+		return _offset+i;
+	}
+
+	/**
+	 *
+	 * @param i position in this block
+	 * @return a handle of the i-th variable
+	 */
+	public CLPVariable get(int i) {
+		return new CLPVariable(_solver, getIndex(i));
+	}
+
+	/**
+	 * Common name of these variables. An underscore followed by the position in the block will be added when the name of a variable is requested.
+	 * @param name
+	 * @return builder
+	 */
+	public CLPVariableBlock name(String name) {
+		_name = name;
+		_solver._varBlocks.put(_offset, this);
+		return this;
+	}
+
+	private void checkLength(double[] values) {
+		if (values.length!=_size)
+			throw new IllegalArgumentException(String.format("Array of size %d does not match a block of size %d.",values.length,_size));
+	}
+
+	/**
+	 * Set the lower bounds of all variables in this block.
+	 * @param values lower bounds, one per variable
+	 * @return builder
+	 */
+	public CLPVariableBlock setLower(double[] values) {
+		checkLength(values);
+		_solver.setVariableLowerBounds(_offset, _solver.checkValues(values, 0), 0, _size);
+		return this;
+	}
+
+	/**
+	 * Set the upper bounds of all variables in this block.
+	 * @param values upper bounds, one per variable
+	 * @return builder
+	 */
+	public CLPVariableBlock setUpper(double[] values) {
+		checkLength(values);
+		_solver.setVariableUpperBounds(_offset, _solver.checkValues(values, 0), 0, _size);
+		return this;
+	}
+
+	/**
+	 * Set the objective coefficients of all variables in this block.
+	 * @param values objective coefficients, one per variable
+	 * @return builder
+	 */
+	public CLPVariableBlock setObjective(double[] values) {
+		checkLength(values);
+		_solver.setObjectiveCoefficients(_offset, _solver.checkValues(values, 0), 0, _size);
+		return this;
+	}
+
+	/**
+	 * Copy the solution values of all variables in this block into the given array.
+	 * @param out array of the size of this block
+	 * @return out
+	 */
+	public double[] getSolution(double[] out) {
+		checkLength(out);
+		_solver.getSolution(_offset, out, 0, _size);
+		return out;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[%s..%s]",_solver.getVariableName(_offset),_solver.getVariableName(_offset+_size-1));
+	}
+
+}
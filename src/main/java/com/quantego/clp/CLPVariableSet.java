@@ -100,5 +100,15 @@ public class CLPVariableSet {
 		}
 		return set;
 	}
+	
+	/**
+	 * Create the variables as a single {@link CLPVariableBlock} without a handle per variable. Names are computed when needed.
+	 * @return a block of variables with the given parameters.
+	 */
+	public CLPVariableBlock buildBlock() {
+		CLPVariableBlock block = _solver.addVariableBlock(_size, _lb, _ub, _obj, _qobj);
+		if (_name!=null) block.name(_name);
+		return block;
+	}
 
 }
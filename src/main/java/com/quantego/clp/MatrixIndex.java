@@ -0,0 +1,247 @@
+package com.quantego.clp;
+
+import jnr.ffi.Pointer;
+
+import java.util.Arrays;
+
+/**
+ * Position index of the nonzeros of the native constraint matrix, which is stored in compressed sparse column format.
+ * The row indices of each column are kept sorted together with their position within the column, so that the position
+ * of a coefficient is found by binary search. Like the native matrix, each column has spare capacity, so that rows
+ * appended to the native model are added to the index in place. A column that runs out of capacity is moved to the end
+ * with twice the capacity. When rows or columns are appended, only the appended entries are read and indexed.
+ * @author Nils Loehndorf
+ *
+ */
+class MatrixIndex {
+
+	int _numCols;
+	int _numRows;
+	//native position of the first nonzero of each column
+	int[] _starts = new int[0];
+	//position of the first nonzero of each column in _rows and _slots
+	int[] _offsets = new int[0];
+	//number of indexed nonzeros of each column
+	int[] _lengths = new int[0];
+	//number of nonzeros that fit into the range of each column in _rows and _slots
+	int[] _capacities = new int[0];
+	int[] _rows = new int[0];
+	//position of each nonzero relative to the native start of its column
+	int[] _slots = new int[0];
+	//used size of _rows and _slots, and the part of it left behind by moved columns
+	int _size;
+	int _unused;
+	int _numElements;
+	//size of the native index and element arrays including gaps
+	int _nativeSize;
+	//address of the native element array when the index was last updated
+	long _address;
+
+	/**
+	 * Bring the index up to date with the native model. Nonzeros that are already indexed keep their position
+	 * within their column, since the native lib appends new rows at the end of each column. The starts and lengths
+	 * of existing columns are only read if rows were appended or the native matrix was reallocated.
+	 * @param model native model
+	 * @param numCols number of columns of the native model
+	 * @param numRows number of rows of the native model
+	 */
+	void update(Pointer model, int numCols, int numRows) {
+		if (numCols == _numCols && numRows == _numRows)
+			return;
+		Pointer elements = CLP.NATIVE.Clp_getElements(model);
+		long address = elements == null ? 0 : elements.address();
+		int from = numRows == _numRows && address == _address ? _numCols : 0;
+		if (numCols > _starts.length) {
+			int capacity = Math.max(numCols, 2*_starts.length);
+			_starts = Arrays.copyOf(_starts, capacity);
+			_offsets = Arrays.copyOf(_offsets, capacity);
+			_lengths = Arrays.copyOf(_lengths, capacity);
+			_capacities = Arrays.copyOf(_capacities, capacity);
+		}
+		int[] lengths = new int[numCols-from];
+		if (numCols > from) {
+			CLP.NATIVE.Clp_getVectorStarts(model).get(from*Integer.BYTES, _starts, from, numCols-from);
+			CLP.NATIVE.Clp_getVectorLengths(model).get(from*Integer.BYTES, lengths, 0, numCols-from);
+		}
+		int numAppended = 0;
+		int nativeSize = from > 0 ? _nativeSize : 0;
+		for (int col=from; col<numCols; col++) {
+			numAppended += lengths[col-from] - indexed(col);
+			nativeSize = Math.max(nativeSize, _starts[col]+lengths[col-from]);
+		}
+		Pointer indices = CLP.NATIVE.Clp_getIndices(model);
+		//read the whole native index at once unless only a small tail has been appended
+		int[] nativeRows = null;
+		if (numAppended > nativeSize/8) {
+			nativeRows = new int[nativeSize];
+			indices.get(0, nativeRows, 0, nativeSize);
+		}
+		for (int col=from; col<numCols; col++) {
+			int length = lengths[col-from];
+			int indexed = indexed(col);
+			if (length == indexed)
+				continue;
+			if (col >= _numCols) {
+				_offsets[col] = allocate(length);
+				_capacities[col] = length;
+			}
+			else if (length > _capacities[col])
+				move(col, Math.max(length, 2*_capacities[col]));
+			int pos = _offsets[col];
+			if (nativeRows != null)
+				System.arraycopy(nativeRows, _starts[col]+indexed, _rows, pos+indexed, length-indexed);
+			else
+				indices.get((_starts[col]+indexed)*Integer.BYTES, _rows, pos+indexed, length-indexed);
+			for (int k=indexed; k<length; k++)
+				_slots[pos+k] = k;
+			for (int k=Math.max(indexed, 1); k<length; k++) {
+				if (_rows[pos+k-1] > _rows[pos+k]) {
+					sort(_rows, _slots, pos, pos+length);
+					break;
+				}
+			}
+			_lengths[col] = length;
+			_numElements += length-indexed;
+		}
+		_numCols = numCols;
+		_numRows = numRows;
+		_nativeSize = nativeSize;
+		_address = address;
+		if (_unused > _size/2)
+			compact();
+	}
+
+	/**
+	 * @return number of nonzeros of the column that are already indexed
+	 */
+	private int indexed(int col) {
+		return col < _numCols ? _lengths[col] : 0;
+	}
+
+	/**
+	 * Reserve a range at the end of the index, which grows geometrically.
+	 * @return start of the range
+	 */
+	private int allocate(int length) {
+		if (_size+length > _rows.length) {
+			int capacity = Math.max(_size+length, 2*_rows.length);
+			_rows = Arrays.copyOf(_rows, capacity);
+			_slots = Arrays.copyOf(_slots, capacity);
+		}
+		int start = _size;
+		_size += length;
+		return start;
+	}
+
+	/**
+	 * Move a column to the end of the index with the given capacity.
+	 */
+	private void move(int col, int capacity) {
+		int start = allocate(capacity);
+		System.arraycopy(_rows, _offsets[col], _rows, start, _lengths[col]);
+		System.arraycopy(_slots, _offsets[col], _slots, start, _lengths[col]);
+		_unused += _capacities[col];
+		_offsets[col] = start;
+		_capacities[col] = capacity;
+	}
+
+	/**
+	 * Remove the ranges left behind by moved columns, keeping the capacity of each column.
+	 */
+	private void compact() {
+		int[] rows = new int[_size-_unused];
+		int[] slots = new int[rows.length];
+		int pos = 0;
+		for (int col=0; col<_numCols; col++) {
+			System.arraycopy(_rows, _offsets[col], rows, pos, _lengths[col]);
+			System.arraycopy(_slots, _offsets[col], slots, pos, _lengths[col]);
+			_offsets[col] = pos;
+			pos += _capacities[col];
+		}
+		_rows = rows;
+		_slots = slots;
+		_size = pos;
+		_unused = 0;
+	}
+
+	/**
+	 * The native lib may repack the matrix in place, which moves the columns without reallocating the element array.
+	 * @param model native model
+	 * @return true if an indexed column of the native model no longer starts at the indexed position
+	 */
+	boolean moved(Pointer model) {
+		if (_numCols == 0)
+			return false;
+		int[] starts = new int[_numCols];
+		CLP.NATIVE.Clp_getVectorStarts(model).get(0, starts, 0, _numCols);
+		for (int col=0; col<_numCols; col++)
+			if (starts[col] != _starts[col])
+				return true;
+		return false;
+	}
+
+	/**
+	 * Sort a range of rows together with their slots.
+	 */
+	private static void sort(int[] rows, int[] slots, int from, int to) {
+		long[] entries = new long[to-from];
+		for (int k=from; k<to; k++)
+			entries[k-from] = ((long) rows[k] << 32) | slots[k];
+		Arrays.sort(entries);
+		for (int k=from; k<to; k++) {
+			rows[k] = (int) (entries[k-from] >>> 32);
+			slots[k] = (int) entries[k-from];
+		}
+	}
+
+	/**
+	 * @param row
+	 * @param col
+	 * @return position of the coefficient in the native element array or -1 if the column does not contain the row
+	 */
+	int position(int row, int col) {
+		if (col < 0 || col >= _numCols)
+			return -1;
+		int k = Arrays.binarySearch(_rows, _offsets[col], _offsets[col]+_lengths[col], row);
+		return k < 0 ? -1 : _starts[col]+_slots[k];
+	}
+
+	/**
+	 * @return start of each column in compressed sparse column format without gaps, followed by the number of nonzeros
+	 */
+	int[] starts() {
+		int[] starts = new int[_numCols+1];
+		for (int col=0; col<_numCols; col++)
+			starts[col+1] = starts[col]+_lengths[col];
+		return starts;
+	}
+
+	/**
+	 * @return row indices in compressed sparse column format without gaps
+	 */
+	int[] rows() {
+		int[] rows = new int[_numElements];
+		int pos = 0;
+		for (int col=0; col<_numCols; col++) {
+			System.arraycopy(_rows, _offsets[col], rows, pos, _lengths[col]);
+			pos += _lengths[col];
+		}
+		return rows;
+	}
+
+	/**
+	 * @param elements native element array
+	 * @return coefficients in compressed sparse column format without gaps
+	 */
+	double[] values(Pointer elements) {
+		double[] nativeValues = new double[_nativeSize];
+		elements.get(0, nativeValues, 0, _nativeSize);
+		double[] values = new double[_numElements];
+		int pos = 0;
+		for (int col=0; col<_numCols; col++)
+			for (int k=_offsets[col]; k<_offsets[col]+_lengths[col]; k++)
+				values[pos++] = nativeValues[_starts[col]+_slots[k]];
+		return values;
+	}
+
+}
@@ -0,0 +1,106 @@
+package com.quantego.clp;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from variable index to coefficient used by {@link CLPExpression}. Terms of the
+ * same variable index are merged. Indices and coefficients are kept in insertion order in dense arrays,
+ * so they can be handed to the row buffer without iterating over a map.
+ * @author Nils Loehndorf
+ *
+ */
+class TermMap {
+
+	int[] _keys;
+	double[] _values;
+	int _size;
+	int[] _table;
+	int _mask;
+
+	TermMap() {
+		_keys = new int[8];
+		_values = new double[8];
+		_table = new int[16];
+		_mask = _table.length-1;
+	}
+
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * @param key variable index
+	 * @return the position of the key in the dense arrays or -1 if the key is not present
+	 */
+	int indexOf(int key) {
+		int slot = hash(key) & _mask;
+		int pos;
+		while ((pos = _table[slot]) != 0) {
+			if (_keys[pos-1] == key)
+				return pos-1;
+			slot = (slot+1) & _mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Add the value to the coefficient of the given variable index.
+	 * @param key variable index
+	 * @param value
+	 */
+	void add(int key, double value) {
+		int slot = hash(key) & _mask;
+		int pos;
+		while ((pos = _table[slot]) != 0) {
+			if (_keys[pos-1] == key) {
+				_values[pos-1] += value;
+				return;
+			}
+			slot = (slot+1) & _mask;
+		}
+		if (_size == _keys.length) {
+			_keys = Arrays.copyOf(_keys, _size*2);
+			_values = Arrays.copyOf(_values, _size*2);
+		}
+		_keys[_size] = key;
+		_values[_size] = value;
+		_table[slot] = ++_size;
+		if (2*_size > _table.length)
+			rehash(_table.length*2);
+	}
+
+	double get(int key) {
+		int pos = indexOf(key);
+		return pos < 0 ? 0. : _values[pos];
+	}
+
+	int size() {
+		return _size;
+	}
+
+	private void rehash(int capacity) {
+		_table = new int[capacity];
+		_mask = capacity-1;
+		for (int pos=0; pos<_size; pos++) {
+			int slot = hash(_keys[pos]) & _mask;
+			while (_table[slot] != 0)
+				slot = (slot+1) & _mask;
+			_table[slot] = pos+1;
+		}
+	}
+
+	/**
+	 * Remove all terms but keep the capacity. Only the occupied slots are visited.
+	 */
+	void clear() {
+		for (int pos=0; pos<_size; pos++) {
+			int slot = hash(_keys[pos]) & _mask;
+			while (_table[slot] != pos+1)
+				slot = (slot+1) & _mask;
+			_table[slot] = 0;
+		}
+		_size = 0;
+	}
+
+}
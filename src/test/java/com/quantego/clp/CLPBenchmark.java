@@ -0,0 +1,131 @@
+package com.quantego.clp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * <p>Timing benchmarks, which are kept out of the unit tests, since their results depend on the machine. Run after
+ * <code>mvn test-compile</code> with the test classpath, e.g.,</p>
+ * <pre>java -cp target/classes:target/test-classes:&lt;dependencies&gt; com.quantego.clp.CLPBenchmark [bulk] [copy] [batch]</pre>
+ * <p>Without arguments, all benchmarks are run. Each benchmark is repeated and the fastest run is reported.</p>
+ * @author Nils Loehndorf
+ *
+ */
+public class CLPBenchmark {
+
+	static final int REPEATS = 3;
+
+	public static void main(String[] args) {
+		List<String> names = Arrays.asList(args);
+		if (names.isEmpty() || names.contains("bulk"))
+			bulkConstraints(200000, 10, 1000);
+		if (names.isEmpty() || names.contains("copy"))
+			copy(200000, 10, 1000);
+		if (names.isEmpty() || names.contains("batch"))
+			batch(200);
+	}
+
+	/**
+	 * Loading constraints row by row through expressions versus a single bulk load in compressed sparse row format.
+	 */
+	static void bulkConstraints(int rows, int rowLength, int cols) {
+		int[] starts = new int[rows+1];
+		int[] columns = new int[rows*rowLength];
+		double[] elements = new double[rows*rowLength];
+		double[] lower = new double[rows];
+		double[] upper = new double[rows];
+		for (int i=0; i<rows; i++) {
+			for (int j=0; j<rowLength; j++) {
+				columns[i*rowLength+j] = (i+j*97)%cols;
+				elements[i*rowLength+j] = 1+j;
+			}
+			starts[i+1] = (i+1)*rowLength;
+			lower[i] = Double.NEGATIVE_INFINITY;
+			upper[i] = i;
+		}
+		long rowWise = Long.MAX_VALUE;
+		long bulk = Long.MAX_VALUE;
+		for (int r=0; r<REPEATS; r++) {
+			long time = System.nanoTime();
+			CLP clp = new CLP();
+			CLPVariable[] x = clp.addVariables(cols).build();
+			CLPExpression expr = clp.createExpression();
+			for (int i=0; i<rows; i++) {
+				expr.reset();
+				for (int j=starts[i]; j<starts[i+1]; j++)
+					expr.add(elements[j],x[columns[j]]);
+				expr.leqRow(upper[i]);
+			}
+			//reading a dual value flushes the buffers
+			clp.getConstraint(rows-1).getSolution();
+			rowWise = Math.min(rowWise, System.nanoTime()-time);
+			time = System.nanoTime();
+			clp = new CLP();
+			clp.addVariables(cols).build();
+			clp.addConstraints(starts, columns, elements, lower, upper).get(rows-1).getSolution();
+			bulk = Math.min(bulk, System.nanoTime()-time);
+		}
+		System.out.println(String.format("Loading %d rows: row-wise %d ms, bulk %d ms",rows,rowWise/1000000,bulk/1000000));
+	}
+
+	/**
+	 * Building a model through expressions versus copying the built model.
+	 */
+	static void copy(int rows, int rowLength, int cols) {
+		long build = Long.MAX_VALUE;
+		long copying = Long.MAX_VALUE;
+		for (int r=0; r<REPEATS; r++) {
+			long time = System.nanoTime();
+			CLP clp = new CLP();
+			CLPVariable[] x = clp.addVariables(cols).build();
+			CLPExpression expr = clp.createExpression();
+			for (int i=0; i<rows; i++) {
+				expr.reset();
+				for (int j=0; j<rowLength; j++)
+					expr.add(1+j, x[(i+j*97)%cols]);
+				expr.leqRow(i);
+			}
+			clp.getConstraint(rows-1).getSolution();
+			build = Math.min(build, System.nanoTime()-time);
+			time = System.nanoTime();
+			clp.copy();
+			copying = Math.min(copying, System.nanoTime()-time);
+		}
+		System.out.println(String.format("Model with %d rows: build %d ms, copy %d ms",rows,build/1000000,copying/1000000));
+	}
+
+	/**
+	 * Building and solving a batch of models sequentially versus with {@link CLPBatchSolver} on 1, 2, 4, ... threads up to
+	 * the number of cores.
+	 */
+	static void batch(int n) {
+		List<Supplier<CLP>> factories = new ArrayList<>();
+		for (int k=0; k<n; k++) {
+			long seed = k;
+			factories.add(() -> CLPTest.randomModel(100, 80, seed));
+		}
+		long sequential = Long.MAX_VALUE;
+		for (int r=0; r<REPEATS; r++) {
+			long time = System.nanoTime();
+			for (Supplier<CLP> factory : factories)
+				factory.get().solve();
+			sequential = Math.min(sequential, System.nanoTime()-time);
+		}
+		System.out.println(String.format("Batch of %d models: sequential %d ms",n,sequential/1000000));
+		int cores = Runtime.getRuntime().availableProcessors();
+		for (int threads=1; threads<=cores; threads*=2) {
+			long batch = Long.MAX_VALUE;
+			try (CLPBatchSolver solver = new CLPBatchSolver(threads)) {
+				for (int r=0; r<REPEATS; r++) {
+					long time = System.nanoTime();
+					solver.solveFactories(factories);
+					batch = Math.min(batch, System.nanoTime()-time);
+				}
+			}
+			System.out.println(String.format("Batch of %d models: %d threads %d ms, speedup %.1f",n,threads,batch/1000000,(double)sequential/batch));
+		}
+	}
+
+}
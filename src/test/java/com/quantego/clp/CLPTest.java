@@ -2,11 +2,38 @@ package com.quantego.clp;
 
 import jnr.ffi.Pointer;
 import jnr.ffi.Runtime;
+import org.junit.Assume;
 import org.junit.Test;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import static org.junit.Assert.*;
 
@@ -105,6 +132,26 @@ public class CLPTest {
 		assertEquals(1., var.getSolution(), 1e-10);
 	}
 	
+	@Test
+	public void testQuadReload() {
+		CLP clp = new CLP().maximization();
+		CLPVariable var = clp.addVariable().obj(2).quad(-1);
+		clp.solve();
+		//the quadratic objective is only reloaded after a change, which invalidates views of the objective
+		int version = clp.getStructureVersion();
+		DoubleBuffer obj = clp.getObjectiveView();
+		assertEquals(version, clp.getStructureVersion());
+		obj.put(0, 4);
+		clp.solve();
+		assertEquals(version, clp.getStructureVersion());
+		assertEquals(2., var.getSolution(), 1e-10);
+		var.quad(-2);
+		clp.solve();
+		assertTrue(version != clp.getStructureVersion());
+		assertEquals(1., var.getSolution(), 1e-10);
+		assertEquals(4., clp.getObjectiveView().get(0), 0);
+	}
+	
 	@Test
 	public void testOffset() {
 		CLP clp = new CLP();
@@ -152,4 +199,1259 @@ public class CLPTest {
 		clp.minimize();
 		System.out.println(clp.toString());
 	}
+
+	/**
+	 * Allocation counters are a vendor extension, so tests that rely on them are skipped on other VMs.
+	 */
+	static com.sun.management.ThreadMXBean allocationBean() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) bean;
+		Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+		return allocations;
+	}
+
+	@Test
+	public void testRowBufferHeap() {
+		int rows = 10000;
+		int rowLength = 50;
+		int numNonzeros = rows*rowLength;
+		int[] columns = new int[rowLength];
+		double[] elements = new double[rowLength];
+		for (int j=0; j<rowLength; j++) {
+			columns[j] = 1000+j;
+			elements[j] = 1.+j;
+		}
+		com.sun.management.ThreadMXBean bean = allocationBean();
+		long tid = Thread.currentThread().getId();
+		//staging as boxed lists
+		long before = bean.getThreadAllocatedBytes(tid);
+		List<Integer> boxedColumns = new ArrayList<>();
+		List<Double> boxedElements = new ArrayList<>();
+		for (int i=0; i<rows; i++) {
+			for (int j=0; j<rowLength; j++) {
+				boxedColumns.add(columns[j]+i);
+				boxedElements.add(elements[j]+i);
+			}
+		}
+		long boxed = bean.getThreadAllocatedBytes(tid)-before;
+		assertEquals(numNonzeros, boxedColumns.size());
+		//staging in row buffer, second pass reuses the capacity of the first
+		CLP clp = new CLP().buffer(rows+1);
+		clp.addVariables(1100).build();
+		for (int i=0; i<rows; i++)
+			clp._rowBuffer.addRow(columns, elements, rowLength, CLPConstraint.TYPE.LEQ, i);
+		clp._rowBuffer.clear();
+		before = bean.getThreadAllocatedBytes(tid);
+		for (int i=0; i<rows; i++)
+			clp._rowBuffer.addRow(columns, elements, rowLength, CLPConstraint.TYPE.LEQ, i);
+		long staged = bean.getThreadAllocatedBytes(tid)-before;
+		assertEquals(numNonzeros, clp._rowBuffer.numElements());
+		assertTrue(staged < boxed);
+		//capacity is reused after the buffer is cleared
+		Pointer capacity = clp._rowBuffer._columns;
+		clp._rowBuffer.clear();
+		assertEquals(0, clp._rowBuffer.size());
+		clp._rowBuffer.addRow(columns, elements, rowLength, CLPConstraint.TYPE.GEQ, 0);
+		assertSame(capacity, clp._rowBuffer._columns);
+		//and after a flush
+		CLP flushed = new CLP().buffer(10);
+		CLPVariable x = flushed.addVariable().obj(-1);
+		for (int i=0; i<5; i++)
+			flushed.createExpression().add(x).leq(i+1);
+		capacity = flushed._rowBuffer._columns;
+		assertSame(CLP.STATUS.OPTIMAL, flushed.solve());
+		assertEquals(0, flushed._rowBuffer.size());
+		flushed.createExpression().add(x).leq(0.5);
+		assertSame(capacity, flushed._rowBuffer._columns);
+	}
+
+	@Test
+	public void testBufferedRowUpdates() {
+		CLP clp = new CLP().buffer(2);
+		CLPVariable x = clp.addVariable().obj(-1);
+		CLPVariable y = clp.addVariable().obj(-1);
+		clp.createExpression().add(x).leq(10);
+		clp.createExpression().add(y).leq(10);
+		CLPConstraint c1 = clp.createExpression().add(x).add(y).leq(10);
+		CLPConstraint c2 = clp.createExpression().add(2,x).add(y).leq(10);
+		//c1 and c2 are still buffered while the first two rows are native
+		c1.setRhs(4);
+		c2.setLhs(x, 1);
+		c2.setRhs(3);
+		assertSame(CLP.STATUS.OPTIMAL, clp.minimize());
+		assertEquals(-3., clp.getObjectiveValue(), 1e-10);
+		assertEquals(-1., c2.getSolution(), 1e-10);
+	}
+
+	@Test
+	public void testExpressionTerms() {
+		CLP clp = new CLP();
+		CLPVariable x = clp.addVariable().ub(1).obj(-1);
+		CLPVariable alias = new CLPVariable(clp, x._index);
+		CLPExpression expr = clp.createExpression().add(2,x).add(3,alias).add(-1,x);
+		assertEquals(1, expr._terms.size());
+		assertEquals(4., expr._terms.get(x._index), 0);
+		expr.leq(2);
+		clp.minimize();
+		assertEquals(0.5, x.getSolution(), 1e-10);
+		//growth, lookup and reuse after clear
+		TermMap terms = new TermMap();
+		for (int round=0; round<2; round++) {
+			for (int i=0; i<1000; i++)
+				terms.add(i*31, i);
+			for (int i=0; i<1000; i++)
+				terms.add(i*31, i);
+			assertEquals(1000, terms.size());
+			for (int i=0; i<1000; i++)
+				assertEquals(2.*i, terms.get(i*31), 0);
+			assertEquals(0., terms.get(1), 0);
+			terms.clear();
+			assertEquals(0, terms.size());
+			assertEquals(-1, terms.indexOf(31));
+		}
+	}
+
+	@Test
+	public void testReusableExpression() {
+		int rows = 20000;
+		CLP clp = new CLP().buffer(2*rows+1);
+		CLPVariable[] x = clp.addVariables(10).ub(1).obj(-1).build();
+		CLPExpression expr = clp.createExpression();
+		//first pass grows the row buffer to its final capacity
+		for (int i=0; i<rows; i++)
+			expr.reset().add(1,x[i%10]).add(2,x[(i+1)%10]).add(3,x[(i+2)%10]).leqRow(6);
+		com.sun.management.ThreadMXBean bean = allocationBean();
+		long tid = Thread.currentThread().getId();
+		long before = bean.getThreadAllocatedBytes(tid);
+		int row = 0;
+		for (int i=0; i<rows; i++)
+			row = expr.reset().add(1,x[i%10]).add(2,x[(i+1)%10]).add(3,x[(i+2)%10]).leqRow(6);
+		long allocated = bean.getThreadAllocatedBytes(tid)-before;
+		assertTrue(allocated < rows);
+		assertEquals(2*rows-1, row);
+		CLPConstraint ctr = clp.getConstraint(row);
+		assertSame(CLPConstraint.TYPE.LEQ, ctr._type);
+		assertEquals(6., ctr.getRhs(), 0);
+		ctr.setRhs(3);
+		assertSame(CLP.STATUS.OPTIMAL, clp.minimize());
+		assertEquals(-9., clp.getObjectiveValue(), 1e-10);
+	}
+
+	@Test
+	public void testColumnBuffer() {
+		CLP clp = new CLP().buffer(3);
+		CLPVariable[] x = new CLPVariable[10];
+		CLPExpression sum = clp.createExpression();
+		for (int i=0; i<x.length; i++) {
+			x[i] = clp.addVariable().lb(-i).ub(i).obj(i%2==0 ? 1 : -1);
+			sum.add(x[i]);
+		}
+		//first columns are native, last one is still buffered
+		x[0].bounds(-1, 1);
+		x[9].ub(2).obj(-2);
+		sum.geq(-100);
+		assertSame(CLP.STATUS.OPTIMAL, clp.minimize());
+		for (int i=1; i<9; i++)
+			assertEquals(i%2==0 ? -i : i, x[i].getSolution(), 1e-10);
+		assertEquals(-1., x[0].getSolution(), 1e-10);
+		assertEquals(2., x[9].getSolution(), 1e-10);
+	}
+
+	@Test
+	public void testBulkConstraints() {
+		//max x + y s.t. x + 2y <= 4, 3x + y <= 6, buffered row y <= 1.5
+		CLP clp = new CLP();
+		CLPVariable x = clp.addVariable().obj(1);
+		CLPVariable y = clp.addVariable().obj(1);
+		clp.createExpression().add(y).leq(1.5);
+		CLPConstraintBlock block = clp.addConstraints(new int[]{0,2,4}, new int[]{0,1,0,1}, new double[]{1,2,3,1},
+				new double[]{Double.NEGATIVE_INFINITY,Double.NEGATIVE_INFINITY}, new double[]{4,6});
+		assertEquals(2, block.size());
+		assertEquals(2, block.getIndex(1));
+		assertEquals(3, clp.getNumConstraints());
+		assertSame(CLPConstraint.TYPE.LEQ, block.get(0)._type);
+		assertSame(CLP.STATUS.OPTIMAL, clp.maximize());
+		assertEquals(2.8, clp.getObjectiveValue(), 1e-10);
+		assertEquals(1.6, x.getSolution(), 1e-10);
+		//same rows from direct buffers
+		ByteBuffer starts = ByteBuffer.allocateDirect(3*Integer.BYTES).order(ByteOrder.nativeOrder());
+		ByteBuffer columns = ByteBuffer.allocateDirect(4*Integer.BYTES).order(ByteOrder.nativeOrder());
+		ByteBuffer elements = ByteBuffer.allocateDirect(4*Double.BYTES).order(ByteOrder.nativeOrder());
+		ByteBuffer lower = ByteBuffer.allocateDirect(2*Double.BYTES).order(ByteOrder.nativeOrder());
+		ByteBuffer upper = ByteBuffer.allocateDirect(2*Double.BYTES).order(ByteOrder.nativeOrder());
+		starts.putInt(0).putInt(2).putInt(4);
+		columns.putInt(0).putInt(1).putInt(0).putInt(1);
+		elements.putDouble(1).putDouble(2).putDouble(3).putDouble(1);
+		lower.putDouble(Double.NEGATIVE_INFINITY).putDouble(Double.NEGATIVE_INFINITY);
+		upper.putDouble(4).putDouble(6);
+		for (ByteBuffer buffer : new ByteBuffer[]{starts,columns,elements,lower,upper})
+			buffer.flip();
+		clp = new CLP();
+		x = clp.addVariable().obj(1);
+		clp.addVariable().obj(1);
+		block = clp.addConstraints(2, starts, columns, elements, lower, upper);
+		assertEquals(0, block.getIndex(0));
+		assertSame(CLP.STATUS.OPTIMAL, clp.maximize());
+		assertEquals(2.8, clp.getObjectiveValue(), 1e-10);
+		//buffers are read from their current position
+		ByteBuffer[] padded = new ByteBuffer[5];
+		ByteBuffer[] buffers = {starts,columns,elements,lower,upper};
+		for (int k=0; k<5; k++) {
+			padded[k] = ByteBuffer.allocateDirect(Double.BYTES+buffers[k].capacity()).order(ByteOrder.nativeOrder());
+			padded[k].position(Double.BYTES);
+			padded[k].put(buffers[k]);
+			padded[k].position(Double.BYTES);
+		}
+		clp = new CLP();
+		clp.addVariable().obj(1);
+		clp.addVariable().obj(1);
+		clp.addConstraints(2, padded[0], padded[1], padded[2], padded[3], padded[4]);
+		assertSame(CLP.STATUS.OPTIMAL, clp.maximize());
+		assertEquals(2.8, clp.getObjectiveValue(), 1e-10);
+		try {
+			clp.addConstraints(new int[]{0,1}, new int[]{2}, new double[]{1}, new double[]{0}, new double[]{1});
+			fail();
+		} catch (IndexOutOfBoundsException e) {}
+	}
+	
+	@Test
+	public void testBulkConstraintsLarge() {
+		int rows = 200000;
+		int rowLength = 10;
+		int cols = 1000;
+		int[] starts = new int[rows+1];
+		int[] columns = new int[rows*rowLength];
+		double[] elements = new double[rows*rowLength];
+		double[] lower = new double[rows];
+		double[] upper = new double[rows];
+		for (int i=0; i<rows; i++) {
+			for (int j=0; j<rowLength; j++) {
+				columns[i*rowLength+j] = (i+j*97)%cols;
+				elements[i*rowLength+j] = 1+j;
+			}
+			starts[i+1] = (i+1)*rowLength;
+			lower[i] = Double.NEGATIVE_INFINITY;
+			upper[i] = i;
+		}
+		CLP clp = new CLP();
+		CLPVariable[] x = clp.addVariables(cols).build();
+		CLPExpression expr = clp.createExpression();
+		for (int i=0; i<rows; i++) {
+			expr.reset();
+			for (int j=starts[i]; j<starts[i+1]; j++)
+				expr.add(elements[j],x[columns[j]]);
+			expr.leqRow(upper[i]);
+		}
+		//reading a dual value flushes the buffers
+		clp.getConstraint(rows-1).getSolution();
+		CLP bulk = new CLP();
+		bulk.addVariables(cols).build();
+		bulk.addConstraints(starts, columns, elements, lower, upper).get(rows-1).getSolution();
+		//both ways of loading yield the same native model
+		assertEquals(rows, bulk.getNumConstraints());
+		assertEquals(CLP.NATIVE.Clp_getNumElements(clp._model), CLP.NATIVE.Clp_getNumElements(bulk._model));
+		assertEquals(clp.getConstraintUpperView(), bulk.getConstraintUpperView());
+		assertEquals(clp.getConstraintLowerView(), bulk.getConstraintLowerView());
+		assertTrue(Arrays.equals(clp.getMatrixIndex().rows(), bulk.getMatrixIndex().rows()));
+		assertTrue(Arrays.equals(clp.getMatrixIndex().values(clp._elements), bulk.getMatrixIndex().values(bulk._elements)));
+	}
+
+	@Test
+	public void testBulkColumns() {
+		CLP clp = new CLP();
+		CLPConstraintBlock cover = clp.addConstraints(new int[]{0,0,0}, new int[0], new double[0], 
+				new double[]{1,1}, new double[]{Double.POSITIVE_INFINITY,Double.POSITIVE_INFINITY});
+		CLPVariableBlock x = clp.addColumns(new int[]{0,1,3,4}, new int[]{0,0,1,1}, new double[]{1,1,1,1}, 
+				new double[3], new double[]{Double.POSITIVE_INFINITY,Double.POSITIVE_INFINITY,Double.POSITIVE_INFINITY}, new double[]{1,1.5,1});
+		assertEquals(3, clp.getNumVariables());
+		assertSame(CLP.STATUS.OPTIMAL, clp.minimize());
+		assertEquals(1.5, clp.getObjectiveValue(), 1e-10);
+		assertEquals(1., x.get(1).getSolution(), 1e-10);
+		//column generation step
+		CLPVariable y = clp.addVariable(new CLPConstraint[]{cover.get(0),cover.get(1)}, new double[]{1,1}).obj(1);
+		assertEquals(3, y._index);
+		assertSame(CLP.STATUS.OPTIMAL, clp.minimize());
+		assertEquals(1., clp.getObjectiveValue(), 1e-10);
+		assertEquals(1., y.getSolution(), 1e-10);
+		//columns of a maximization problem
+		clp = new CLP().maximization();
+		CLPConstraint c = clp.createExpression().add(clp.addVariable()).leq(2);
+		x = clp.addColumns(new int[]{0,1}, new int[]{0}, new double[]{2}, new double[]{0}, new double[]{Double.POSITIVE_INFINITY}, new double[]{3});
+		assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+		assertEquals(3., clp.getObjectiveValue(), 1e-10);
+		assertEquals(1., x.get(0).getSolution(), 1e-10);
+		assertEquals(1.5, c.getSolution(), 1e-10);
+	}
+
+	@Test
+	public void testModelBuilder() {
+		CLPModelBuilder builder = new CLPModelBuilder();
+		int x0 = builder.addVariable(0, 1, 0);
+		int x1 = builder.addVariable(0, 0.3, 2.655523);
+		int x2 = builder.addVariable(0, 0.3, -2.70917);
+		int x3 = builder.addVariable(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 1);
+		builder.addConstraint(new int[]{x0,x3}, new double[]{-3.484345,1}, CLPConstraint.TYPE.LEQ, 0.302499);
+		builder.addConstraint(new int[]{x0,x3}, new double[]{-3.074807,1}, CLPConstraint.TYPE.LEQ, 0.507194);
+		int eq = builder.addConstraint(new int[]{x0,x1,x2}, new double[]{1,1.01,-.99}, CLPConstraint.TYPE.EQ, 0.594);
+		builder.variableName(x1, "var_1").constraintName(eq, "eq_ctr");
+		CLP clp = builder.build().maximization();
+		String str = "Maximize\n"
+	    		+ "obj: + 2.655523 var_1 - 2.70917 x_2 + x_3\n"
+	    		+ "Subject To\n"
+	    		+ "ctr_0: - 3.484345 x_0 + x_3 <= 0.302499\n"
+	    		+ "ctr_1: - 3.074807 x_0 + x_3 <= 0.507194\n"
+	    		+ "eq_ctr: + x_0 + 1.01 var_1 - 0.99 x_2 = 0.594\n"
+	    		+ "Bounds\n"
+	    		+ "x_0 <= 1.0\n"
+	    		+ "var_1 <= 0.3\n"
+	    		+ "x_2 <= 0.3\n"
+	    		+ "-inf <= x_3 <= inf\n"
+	    		+ "End";
+	    assertEquals(str, clp.toString());
+		try {
+			builder.addVariable(1);
+			fail();
+		} catch (IllegalStateException e) {}
+		//parallel transpose of a larger model against the row-wise model
+		Random gen = new Random(7);
+		builder = new CLPModelBuilder();
+		CLP reference = new CLP().buffer(100);
+		CLPVariable[] x = new CLPVariable[200];
+		for (int j=0; j<x.length; j++) {
+			double obj = -gen.nextDouble();
+			builder.addVariable(0, 1, obj);
+			x[j] = reference.addVariable().ub(1).obj(obj);
+		}
+		for (int i=0; i<500; i++) {
+			int[] columns = new int[5];
+			double[] elements = new double[5];
+			CLPExpression expr = reference.createExpression();
+			for (int k=0; k<5; k++) {
+				columns[k] = (i*7+k*41)%x.length;
+				elements[k] = gen.nextDouble();
+				expr.add(elements[k], x[columns[k]]);
+			}
+			builder.addConstraint(columns, elements, Double.NEGATIVE_INFINITY, 1);
+			expr.leq(1);
+		}
+		int[][] starts = new int[2][201];
+		int[][] rows = new int[2][2500];
+		double[][] values = new double[2][2500];
+		builder.transpose(starts[0], rows[0], values[0], 64);
+		builder.transpose(starts[1], rows[1], values[1], Integer.MAX_VALUE);
+		assertArrayEquals(starts[1], starts[0]);
+		assertArrayEquals(rows[1], rows[0]);
+		assertArrayEquals(values[1], values[0], 0);
+		clp = builder.build();
+		assertSame(CLP.STATUS.OPTIMAL, clp.minimize());
+		assertSame(CLP.STATUS.OPTIMAL, reference.minimize());
+		assertEquals(reference.getObjectiveValue(), clp.getObjectiveValue(), 1e-8);
+	}
+
+	@Test
+	public void testModelBuilderEdgeCases() {
+		//no constraints
+		CLPModelBuilder builder = new CLPModelBuilder();
+		builder.addVariable(-1, 2, 1);
+		CLP clp = builder.build();
+		assertEquals(0, clp.getNumConstraints());
+		assertSame(CLP.STATUS.OPTIMAL, clp.maximize());
+		assertEquals(2, clp.getObjectiveValue(), 1e-8);
+		//no variables
+		clp = new CLPModelBuilder().build();
+		assertEquals(0, clp.getNumVariables());
+		assertEquals(0, clp.getNumConstraints());
+		//small values are set to zero
+		builder = new CLPModelBuilder().smallestCoefficient(1e-6);
+		int x0 = builder.addVariable(0, 1, 1e-7);
+		int x1 = builder.addVariable(0, 1, 1);
+		builder.addConstraint(new int[]{x0,x1}, new double[]{1e-8,1}, 1e-9, 1);
+		clp = builder.build();
+		assertEquals(0, clp.getObjectiveView().get(0), 0);
+		assertEquals(0, clp.getConstraintLowerView().get(0), 0);
+		for (double value : clp.getMatrixIndex().values(clp._elements))
+			assertTrue(value == 0 || value == 1);
+	}
+
+	@Test
+	public void testVariableBlock() {
+		CLP clp = new CLP().buffer(4);
+		CLPVariable first = clp.addVariable();
+		CLPVariableBlock x = clp.addVariables(6).ub(10).obj(1).name("x").buildBlock();
+		CLPVariableBlock y = clp.addVariables(3).lb(-1).buildBlock();
+		assertEquals("x_2", x.get(2).toString());
+		assertEquals("x_7", y.get(0).toString());
+		assertEquals("[x_0..x_5]", x.toString());
+		//x is native, y is still buffered
+		x.setLower(new double[]{1,2,3,4,5,6});
+		x.setObjective(new double[]{1,1,1,1,1,-1});
+		y.setUpper(new double[]{1,2,3});
+		y.setObjective(new double[]{-3,-2,-1});
+		clp.createExpression().add(new double[]{1,1,1,1,1,1}, x).add(first).leq(100);
+		clp.createExpression().add(new double[]{1,1,1}, y).leq(5);
+		assertSame(CLP.STATUS.OPTIMAL, clp.minimize());
+		assertArrayEquals(new double[]{1,2,3,4,5,10}, x.getSolution(new double[6]), 1e-10);
+		assertArrayEquals(new double[]{1,2,2}, y.getSolution(new double[3]), 1e-10);
+		assertEquals(-4., clp.getObjectiveValue(), 1e-10);
+		clp.maximization();
+		x.setObjective(new double[]{-1,-1,-1,-1,-1,1});
+		y.setObjective(new double[]{3,2,1});
+		assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+		assertEquals(4., clp.getObjectiveValue(), 1e-10);
+		//values below the smallest element are treated as zero as by the setters of single variables
+		x.setLower(new double[]{1e-30,0,0,0,0,0});
+		assertEquals(0., clp.getVariableLowerView().get(1), 0);
+	}
+
+	@Test
+	public void testConstraintBlock() {
+		//max sum x_i s.t. x_i <= b_i (native block), x_0 + x_1 >= c (buffered)
+		CLP clp = new CLP().maximization();
+		CLPVariableBlock x = clp.addVariables(3).obj(1).buildBlock();
+		CLPConstraintBlock caps = clp.addConstraints(new int[]{0,1,2,3}, new int[]{0,1,2}, new double[]{1,1,1}, 
+				CLPConstraint.TYPE.LEQ, new double[]{1,2,3});
+		CLPConstraint cover = clp.createExpression().add(x.get(0)).add(x.get(1)).geq(0);
+		assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+		assertEquals(6., clp.getObjectiveValue(), 1e-10);
+		assertArrayEquals(new double[]{1,1,1}, caps.getDuals(new double[3]), 1e-10);
+		caps.setRhs(new double[]{4,5,6});
+		assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+		assertEquals(15., clp.getObjectiveValue(), 1e-10);
+		//the arrays of the update are reused
+		double[] scratch = clp._scratch[0];
+		caps.setRhs(new double[]{4,5,6});
+		assertSame(scratch, clp._scratch[0]);
+		caps.setBounds(new double[]{1e-30,0,0}, new double[]{4,5,6});
+		assertEquals(0., clp.getConstraintLowerView().get(0), 0);
+		caps.setBounds(new double[]{1,1,1}, new double[]{1,1,Double.POSITIVE_INFINITY});
+		x.setUpper(new double[]{10,10,10});
+		assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+		assertEquals(12., clp.getObjectiveValue(), 1e-10);
+		assertArrayEquals(new double[]{1,1,0}, caps.getDuals(new double[3]), 1e-10);
+		assertSame(CLPConstraint.TYPE.EQ, caps.get(0)._type);
+		assertSame(CLPConstraint.TYPE.GEQ, caps.get(2)._type);
+		assertEquals(0., cover.getSolution(), 1e-10);
+		//the right-hand side follows the type of each constraint when it was added, as for a single constraint
+		caps.setRhs(new double[]{2,2,2});
+		assertArrayEquals(new double[]{1,1,1}, new double[]{clp.getConstraintLowerView().get(0),
+				clp.getConstraintLowerView().get(1),clp.getConstraintLowerView().get(2)}, 0);
+		assertArrayEquals(new double[]{2,2,2}, new double[]{clp.getConstraintUpperView().get(0),
+				clp.getConstraintUpperView().get(1),clp.getConstraintUpperView().get(2)}, 0);
+	}
+
+	@Test
+	public void testCoefficientIndex() {
+		//dense column x and sparse columns y_i in rows that are appended in several flushes
+		CLP clp = new CLP().buffer(7);
+		CLPVariable x = clp.addVariable().lb(-1).ub(1);
+		int n = 50;
+		CLPVariable[] y = new CLPVariable[n];
+		CLPConstraint[] rows = new CLPConstraint[n];
+		for (int i=0; i<n; i++) {
+			y[i] = clp.addVariable().obj(1);
+			rows[i] = clp.createExpression().add(x).add(y[i]).geq(i);
+		}
+		clp.solve();
+		MatrixIndex index = clp.getMatrixIndex();
+		int[] indexed = index._rows;
+		for (int i=0; i<n; i++)
+			rows[i].setLhs(x, i+1);
+		assertSame(indexed, clp.getMatrixIndex()._rows);
+		//append a row and a column and update coefficients in both the old and the new part
+		CLPConstraint last = clp.createExpression().add(2, x).add(y[0]).leq(5);
+		CLPVariable z = clp.addVariable(new CLPConstraint[]{rows[3], last}, new double[]{1, 1});
+		last.setLhs(x, 3);
+		rows[3].setLhs(z, 4);
+		rows[n-1].setLhs(y[n-1], 5);
+		index = clp.getMatrixIndex();
+		for (int i=0; i<n; i++)
+			assertEquals(i+1, clp._elements.getDouble(index.position(rows[i]._index, x._index)*Double.BYTES), 1e-10);
+		assertEquals(3, clp._elements.getDouble(index.position(last._index, x._index)*Double.BYTES), 1e-10);
+		assertEquals(4, clp._elements.getDouble(index.position(rows[3]._index, z._index)*Double.BYTES), 1e-10);
+		assertEquals(5, clp._elements.getDouble(index.position(rows[n-1]._index, y[n-1]._index)*Double.BYTES), 1e-10);
+		assertEquals(-1, index.position(rows[1]._index, z._index));
+		try {
+			rows[1].setLhs(y[2], 1);
+			fail();
+		} catch (IllegalStateException e) {}
+		clp.reset();
+		assertTrue(clp.toString().contains(String.format("%s: + 3.0 %s + %s + %s <= 5.0", 
+				clp.getConstraintName(last._index), x, y[0], z)));
+	}
+
+	@Test
+	public void testCoefficientIndexAppends() {
+		//rows and columns appended one at a time are indexed in place, and the index matches one built from scratch
+		Random rnd = new Random(3);
+		CLP clp = new CLP().buffer(1);
+		List<CLPVariable> x = new ArrayList<>();
+		for (int j=0; j<20; j++)
+			x.add(clp.addVariable().ub(1).obj(-1));
+		List<CLPConstraint> rows = new ArrayList<>();
+		Set<int[]> arrays = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (int i=0; i<300; i++) {
+			CLPExpression expr = clp.createExpression();
+			for (CLPVariable var : x)
+				if (rnd.nextDouble() < 0.3)
+					expr.add(1+rnd.nextDouble(), var);
+			expr.add(1, x.get(i%x.size()));
+			rows.add(expr.leq(1));
+			if (i%10 == 0)
+				x.add(clp.addVariable(new CLPConstraint[]{rows.get(rnd.nextInt(rows.size()))}, new double[]{2}));
+			arrays.add(clp.getMatrixIndex()._rows);
+		}
+		assertTrue(arrays.size() < 30);
+		MatrixIndex index = clp.getMatrixIndex();
+		MatrixIndex scratch = new MatrixIndex();
+		scratch.update(clp._model, clp.getNumVariables(), clp.getNumConstraints());
+		assertArrayEquals(scratch.starts(), index.starts());
+		assertArrayEquals(scratch.rows(), index.rows());
+		assertArrayEquals(scratch.values(clp._elements), index.values(clp._elements), 0);
+		for (int i=0; i<rows.size(); i++)
+			for (int j=0; j<x.size(); j++)
+				assertEquals(scratch.position(i, j), index.position(i, j));
+		assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+	}
+
+	@Test
+	public void testUpdateCoefficients() {
+		//x_j + y_j >= 1 for each pair j, minimize sum of x_j + 2 y_j, then make y cheaper in the constraints through the coefficients
+		int n = 200;
+		CLP clp = new CLP();
+		CLPVariableBlock x = clp.addVariables(n).obj(1).buildBlock();
+		CLPVariableBlock y = clp.addVariables(n).obj(2).buildBlock();
+		int[] starts = new int[n+1];
+		int[] columns = new int[2*n];
+		double[] elements = new double[2*n];
+		double[] rhs = new double[n];
+		for (int j=0; j<n; j++) {
+			starts[j+1] = 2*j+2;
+			columns[2*j] = x.getIndex(j);
+			columns[2*j+1] = y.getIndex(j);
+			elements[2*j] = 1;
+			elements[2*j+1] = 1;
+			rhs[j] = 1;
+		}
+		CLPConstraintBlock ctrs = clp.addConstraints(starts, columns, elements, CLPConstraint.TYPE.GEQ, rhs);
+		assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+		assertEquals(n, clp.getObjectiveValue(), 1e-8);
+		int[] pos = new int[2*n];
+		int[] cols = new int[2*n];
+		double[] values = new double[2*n];
+		for (int j=0; j<n; j++) {
+			pos[2*j] = j;
+			cols[2*j] = j;
+			values[2*j] = 0.5;
+			//updated twice, last value counts
+			pos[2*j+1] = j;
+			cols[2*j+1] = j;
+			values[2*j+1] = 4;
+		}
+		clp.updateCoefficients(ctrs, pos, x, cols, values);
+		assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+		assertEquals(0.25*n, clp.getObjectiveValue(), 1e-8);
+		//repeated updates make a batch large enough to be resolved in parallel chunks
+		int size = 2*CLP.UPDATE_CHUNK_SIZE;
+		int[] rows = new int[size];
+		cols = new int[size];
+		values = new double[size];
+		for (int k=0; k<size; k+=2) {
+			int j = (k/2)%n;
+			rows[k] = ctrs.getIndex(j);
+			cols[k] = y.getIndex(j);
+			values[k] = 4;
+			rows[k+1] = ctrs.getIndex(n-j-1);
+			cols[k+1] = x.getIndex(n-j-1);
+			values[k+1] = 1;
+		}
+		clp.updateCoefficients(rows, cols, values);
+		assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+		assertEquals(0.5*n, clp.getObjectiveValue(), 1e-8);
+		try {
+			clp.updateCoefficients(new int[]{ctrs.getIndex(0), ctrs.getIndex(1)}, new int[]{y.getIndex(0), y.getIndex(0)}, new double[]{1, 1});
+			fail();
+		} catch (IllegalStateException e) {}
+		//a rejected update leaves the changes since the last solve untouched
+		assertEquals(0, clp._changes);
+		assertEquals(0.5*n, clp.solve() == CLP.STATUS.OPTIMAL ? clp.getObjectiveValue() : 0, 1e-8);
+	}
+
+	@Test
+	public void testBulkSolution() {
+		//max x + 2y + 0.5z s.t. x + y + z <= 4, y <= 3
+		CLP clp = new CLP().maximization();
+		CLPVariable x = clp.addVariable().obj(1);
+		CLPVariable y = clp.addVariable().obj(2);
+		CLPVariable z = clp.addVariable().obj(0.5);
+		clp.createExpression().add(x).add(y).add(z).leq(4);
+		clp.createExpression().add(y).leq(3);
+		double[] reducedCosts = clp.getReducedCosts(new double[3]);
+		assertArrayEquals(new double[3], reducedCosts, 1e-10);
+		assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+		assertArrayEquals(new double[]{1,3,0}, clp.getPrimal(new double[3]), 1e-10);
+		assertArrayEquals(new double[]{1,1}, clp.getDuals(new double[2]), 1e-10);
+		assertArrayEquals(new double[]{0,0,-0.5}, clp.getReducedCosts(reducedCosts), 1e-10);
+		assertArrayEquals(new double[]{4,3}, clp.getRowActivity(new double[2]), 1e-10);
+		assertArrayEquals(new double[]{3,0,0}, clp.getPrimal(new double[3], 1, 2), 1e-10);
+		assertArrayEquals(new double[]{-0.5}, clp.getReducedCosts(new double[1], 2, 1), 1e-10);
+		//same problem as minimization
+		clp.minimization();
+		clp.setObjectiveCoefficient(x, -1);
+		clp.setObjectiveCoefficient(y, -2);
+		clp.setObjectiveCoefficient(z, -0.5);
+		assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+		assertArrayEquals(new double[]{-1,-1}, clp.getDuals(new double[2]), 1e-10);
+		assertArrayEquals(new double[]{0,0,0.5}, clp.getReducedCosts(reducedCosts), 1e-10);
+		assertArrayEquals(new double[]{3}, clp.getRowActivity(new double[1], 1, 1), 1e-10);
+		try {
+			clp.getPrimal(new double[2]);
+			fail();
+		} catch (IllegalArgumentException e) {}
+		try {
+			clp.getDuals(new double[2], 1, 2);
+			fail();
+		} catch (IndexOutOfBoundsException e) {}
+	}
+
+	@Test
+	public void testNativeViews() {
+		//min x + y s.t. x + y >= 2, x <= 1
+		CLP clp = new CLP();
+		CLPVariable x = clp.addVariable().obj(1).ub(1);
+		CLPVariable y = clp.addVariable().obj(1);
+		CLPConstraint c = clp.createExpression().add(x).add(y).geq(2);
+		DoubleBuffer upper = clp.getVariableUpperView();
+		DoubleBuffer obj = clp.getObjectiveView();
+		DoubleBuffer rhs = clp.getConstraintLowerView();
+		int version = clp.getStructureVersion();
+		assertEquals(2, upper.capacity());
+		assertEquals(1., upper.get(0), 1e-10);
+		assertEquals(Double.POSITIVE_INFINITY, upper.get(1), 0);
+		obj.put(1, 3);
+		rhs.put(0, 1.5);
+		assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+		assertEquals(1., x.getSolution(), 1e-10);
+		assertEquals(0.5, y.getSolution(), 1e-10);
+		DoubleBuffer primal = clp.getPrimalView();
+		assertEquals(0.5, primal.get(1), 1e-10);
+		assertEquals(3., clp.getDualView().get(c._index), 1e-10);
+		try {
+			primal.put(0, 1);
+			fail();
+		} catch (ReadOnlyBufferException e) {}
+		assertEquals(version, clp.getStructureVersion());
+		clp.addVariable();
+		clp.solve();
+		assertTrue(version != clp.getStructureVersion());
+		assertEquals(3, clp.getObjectiveView().capacity());
+	}
+
+	@Test
+	public void testObjectiveSense() {
+		//max x + 2y s.t. x + y <= 4, y <= 3, then min x + 2y s.t. x + y >= 1 with the same coefficients
+		CLP clp = new CLP().maximization();
+		CLPVariable x = clp.addVariable().obj(1);
+		CLPVariable y = clp.addVariable().obj(2);
+		CLPConstraint c1 = clp.createExpression().add(x).add(y).leq(4);
+		clp.createExpression().add(y).leq(3);
+		clp.setObjectiveOffset(1);
+		assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+		assertEquals(8., clp.getObjectiveValue(), 1e-10);
+		assertEquals(1., c1.getSolution(), 1e-10);
+		DoubleBuffer obj = clp.getObjectiveView();
+		clp.minimization();
+		assertEquals(2., obj.get(1), 0);
+		clp.setConstraintBounds(c1, 1, Double.POSITIVE_INFINITY);
+		assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+		assertEquals(2., clp.getObjectiveValue(), 1e-10);
+		assertEquals(1., x.getSolution(), 1e-10);
+		assertEquals(1., c1.getSolution(), 1e-10);
+		clp.maximization();
+		clp.setConstraintBounds(c1, Double.NEGATIVE_INFINITY, 4);
+		clp.addVariable().obj(3).quad(-1).ub(10);
+		assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+		assertEquals(1.+2*3+(3*1.5-1.5*1.5)+1, clp.getObjectiveValue(), 1e-8);
+	}
+
+	static CLP singletonRows(int numVariables) {
+		CLP clp = new CLP().maximization();
+		CLPVariable[] x = clp.addVariables(numVariables).obj(1).build();
+		for (int i=0; i<numVariables; i++)
+			clp.createExpression().add(1, x[i]).leq(1+i);
+		return clp;
+	}
+
+	static CLP randomModel(int numVariables, int numConstraints, long seed) {
+		Random rnd = new Random(seed);
+		CLP clp = new CLP();
+		CLPVariable[] x = new CLPVariable[numVariables];
+		for (int j=0; j<numVariables; j++)
+			x[j] = clp.addVariable().obj(-1-rnd.nextDouble());
+		for (int i=0; i<numConstraints; i++) {
+			CLPExpression expr = clp.createExpression().add(1, x[i%numVariables]);
+			for (int j=0; j<numVariables; j++)
+				if (rnd.nextDouble()<0.3)
+					expr.add(rnd.nextDouble(), x[j]);
+			expr.leq(1+rnd.nextDouble());
+		}
+		return clp;
+	}
+
+	@Test
+	public void testBasis() {
+		CLP clp = randomModel(100, 80, 1);
+		assertNull(clp.getBasis());
+		assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+		assertTrue(clp.getNumIterations() > 0);
+		CLPBasis basis = clp.getBasis(true);
+		assertEquals(80, basis.getNumBasic());
+		assertTrue(basis.hasSolution());
+		//structurally identical model
+		CLP copy = randomModel(100, 80, 1);
+		copy.setBasis(basis);
+		assertSame(CLP.STATUS.OPTIMAL, copy.solve());
+		assertEquals(0, copy.getNumIterations());
+		assertEquals(clp.getObjectiveValue(), copy.getObjectiveValue(), 1e-8);
+		for (int j=0; j<100; j++)
+			assertSame(basis.getVariableStatus(j), copy.getBasis().getVariableStatus(j));
+		//basis survives a rebuild
+		clp.reset();
+		assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+		assertEquals(0, clp.getNumIterations());
+		try {
+			randomModel(100, 81, 1).setBasis(basis);
+			fail();
+		} catch (IllegalArgumentException e) {}
+	}
+
+	@Test
+	public void testBasisCache() throws Exception {
+		File dir = Files.createTempDirectory("basis").toFile();
+		try {
+			CLPBasisCache cache = new CLPBasisCache(dir, 2);
+			CLP clp = randomModel(100, 80, 1).basisCache(cache);
+			assertEquals(randomModel(100, 80, 1).getStructureFingerprint(), clp.getStructureFingerprint());
+			assertTrue(randomModel(100, 80, 2).getStructureFingerprint() != clp.getStructureFingerprint());
+			assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+			assertTrue(clp.getNumIterations() > 0);
+			assertEquals(1, cache.size());
+			//same structure with different data starts from the cached basis
+			CLP next = randomModel(100, 80, 1);
+			next.setConstraintUpperBound(next.getConstraint(0), 1.5);
+			next.basisCache(cache);
+			assertSame(CLP.STATUS.OPTIMAL, next.solve());
+			assertTrue(next.getNumIterations() < clp.getNumIterations());
+			//an unchanged basis is not written again
+			File file = dir.listFiles()[0];
+			Object key = Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+			assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+			assertEquals(0, clp.getNumIterations());
+			assertEquals(key, Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey());
+			//models of the same size but with a different structure do not share a basis
+			assertNull(cache.get(randomModel(100, 80, 2)));
+			//least recently used basis is evicted
+			randomModel(100, 80, 2).basisCache(cache).solve();
+			randomModel(100, 80, 3).basisCache(cache).solve();
+			assertEquals(2, cache.size());
+			assertEquals(2, dir.listFiles().length);
+			//bases persist
+			cache = new CLPBasisCache(dir, 2);
+			CLP again = randomModel(100, 80, 3).basisCache(cache);
+			assertSame(CLP.STATUS.OPTIMAL, again.solve());
+			assertEquals(0, again.getNumIterations());
+		} finally {
+			for (File f : dir.listFiles())
+				f.delete();
+			dir.delete();
+		}
+	}
+
+	@Test
+	public void testResolveStrategy() {
+		CLP clp = randomModel(100, 80, 1);
+		CLP reference = randomModel(100, 80, 1);
+		assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+		assertSame(CLP.ALGORITHM.AUTO, clp._lastAlgorithm);
+		clp.setConstraintUpperBound(clp.getConstraint(3), 0.5);
+		reference.setConstraintUpperBound(reference.getConstraint(3), 0.5);
+		assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+		assertSame(CLP.ALGORITHM.DUAL, clp._lastAlgorithm);
+		assertEquals(reference.solve() == CLP.STATUS.OPTIMAL ? reference.getObjectiveValue() : 0, clp.getObjectiveValue(), 1e-8);
+		CLPVariable x = new CLPVariable(clp, 5);
+		clp.setObjectiveCoefficient(x, -10);
+		reference.setObjectiveCoefficient(new CLPVariable(reference, 5), -10);
+		assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+		assertSame(CLP.ALGORITHM.PRIMAL, clp._lastAlgorithm);
+		assertSame(CLP.STATUS.OPTIMAL, reference.solve());
+		assertEquals(reference.getObjectiveValue(), clp.getObjectiveValue(), 1e-8);
+		//appended constraint
+		clp.createExpression().add(x).leq(0.1);
+		assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+		assertSame(CLP.ALGORITHM.DUAL, clp._lastAlgorithm);
+		assertEquals(0.1, x.getSolution(), 1e-8);
+		//bounds and objective at the same time
+		clp.getVariableUpperView().put(7, 0.2);
+		clp.setObjectiveCoefficient(x, -1);
+		clp.solve();
+		assertSame(CLP.ALGORITHM.AUTO, clp._lastAlgorithm);
+		//writable views are assumed to change until the structure changes
+		clp.solve();
+		assertSame(CLP.ALGORITHM.DUAL, clp._lastAlgorithm);
+		clp.setObjectiveCoefficient(x, -2);
+		clp.solve();
+		assertSame(CLP.ALGORITHM.AUTO, clp._lastAlgorithm);
+		clp.addVariable().obj(-1).ub(1);
+		clp.solve();
+		assertSame(CLP.ALGORITHM.PRIMAL, clp._lastAlgorithm);
+		//coefficients of a buffered constraint do not change the native matrix
+		CLPConstraint appended = clp.createExpression().add(x).add(new CLPVariable(clp, 1)).leq(5);
+		clp.setConstraintCoefficient(appended, x, 2);
+		clp.solve();
+		assertSame(CLP.ALGORITHM.DUAL, clp._lastAlgorithm);
+		clp.setConstraintCoefficient(clp.getConstraint(0), new CLPVariable(clp, 0), 2);
+		clp.solve();
+		assertSame(CLP.ALGORITHM.AUTO, clp._lastAlgorithm);
+		clp.algorithm(CLP.ALGORITHM.PRIMAL).solve();
+		assertSame(CLP.ALGORITHM.PRIMAL, clp._lastAlgorithm);
+	}
+
+	@Test
+	public void testCopy() {
+		CLP clp = randomModel(100, 80, 1).maximization().primalTolerance(1e-8).maxSeconds(100);
+		clp.setObjectiveOffset(2);
+		clp.addVariables(3).name("y").obj(-1).ub(2).buildBlock();
+		clp.createExpression().add(new CLPVariable(clp, 0)).geq(Double.NEGATIVE_INFINITY).name("free");
+		clp.addVariable().lb(Double.NEGATIVE_INFINITY).obj(-1).quad(-1).ub(1);
+		assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+		CLP copy = clp.copy();
+		assertEquals(clp.toString(), copy.toString());
+		assertEquals(clp.getStructureFingerprint(), copy.getStructureFingerprint());
+		assertEquals(1e-8, CLP.NATIVE.Clp_primalTolerance(copy._model), 0);
+		assertArrayEquals(clp.getPrimal(new double[104]), copy.getPrimal(new double[104]), 0);
+		assertSame(CLP.STATUS.OPTIMAL, copy.solve());
+		assertEquals(clp.getObjectiveValue(), copy.getObjectiveValue(), 1e-8);
+		//copies are independent
+		copy.setObjectiveCoefficient(new CLPVariable(copy, 0), 100);
+		copy.setConstraintCoefficient(copy.getConstraint(0), new CLPVariable(copy, 0), 5);
+		assertSame(CLP.STATUS.OPTIMAL, copy.solve());
+		assertSame(CLP.STATUS.OPTIMAL, clp.solve());
+		assertTrue(copy.getObjectiveValue() > clp.getObjectiveValue()+1);
+		assertEquals(0, clp.getNumIterations());
+	}
+
+	@Test
+	public void testCopyLarge() {
+		int rows = 200000;
+		int rowLength = 10;
+		int cols = 1000;
+		CLP clp = new CLP();
+		CLPVariable[] x = clp.addVariables(cols).build();
+		CLPExpression expr = clp.createExpression();
+		for (int i=0; i<rows; i++) {
+			expr.reset();
+			for (int j=0; j<rowLength; j++)
+				expr.add(1+j, x[(i+j*97)%cols]);
+			expr.leqRow(i);
+		}
+		clp.getConstraint(rows-1).getSolution();
+		CLP copy = clp.copy();
+		assertEquals(rows, copy.getNumConstraints());
+		assertEquals(rows*rowLength, CLP.NATIVE.Clp_getNumElements(copy._model));
+		assertEquals(clp.getConstraintUpperView(), copy.getConstraintUpperView());
+		assertTrue(Arrays.equals(clp.getMatrixIndex().rows(), copy.getMatrixIndex().rows()));
+		assertTrue(Arrays.equals(clp.getMatrixIndex().values(clp._elements), copy.getMatrixIndex().values(copy._elements)));
+		//the copy does not share native memory with the original
+		copy.getConstraintUpperView().put(rows-1, -1);
+		assertEquals(rows-1, clp.getConstraintUpperView().get(rows-1), 0);
+	}
+
+	@Test
+	public void testBatchSolver() {
+		//solve the same models sequentially and concurrently, results must match exactly
+		int n = 40;
+		double[] objective = new double[n];
+		int[] iterations = new int[n];
+		for (int k=0; k<n; k++) {
+			CLP clp = randomModel(60, 50, k);
+			clp.solve();
+			objective[k] = clp.getObjectiveValue();
+			iterations[k] = clp.getNumIterations();
+		}
+		List<Supplier<CLP>> factories = new ArrayList<>();
+		List<String> threads = new ArrayList<>();
+		for (int k=0; k<n; k++) {
+			long seed = k;
+			factories.add(() -> {
+				synchronized (threads) {
+					threads.add(Thread.currentThread().getName());
+				}
+				return randomModel(60, 50, seed);
+			});
+		}
+		try (CLPBatchSolver solver = new CLPBatchSolver(4).storePrimal(true).storeDual(true)) {
+			for (int repeat=0; repeat<3; repeat++) {
+				CLPBatchResult result = solver.solveFactories(factories);
+				assertEquals(n, result.size());
+				for (int k=0; k<n; k++) {
+					assertEquals(CLP.STATUS.OPTIMAL, result.getStatus()[k]);
+					assertEquals(objective[k], result.getObjectiveValues()[k], 0);
+					assertEquals(iterations[k], result.getIterations()[k]);
+					assertEquals(60, result.getPrimal()[k].length);
+					assertEquals(50, result.getDuals()[k].length);
+				}
+			}
+			for (String thread : threads)
+				assertTrue(thread.startsWith("clp-batch-"));
+			List<CLP> models = new ArrayList<>();
+			for (int k=0; k<n; k++)
+				models.add(randomModel(60, 50, k));
+			CLPBatchResult result = solver.storePrimal(false).solve(models);
+			assertNull(result.getPrimal());
+			for (int k=0; k<n; k++)
+				assertEquals(objective[k], models.get(k).getObjectiveValue(), 0);
+			factories.set(n/2, () -> { throw new IllegalStateException("factory failed"); });
+			try {
+				solver.solveFactories(factories);
+				fail();
+			} catch (IllegalStateException e) {
+				assertEquals("factory failed", e.getMessage());
+			}
+		}
+	}
+
+	@Test
+	public void testBatchThreadCounts() {
+		//results do not depend on the number of threads
+		int n = 200;
+		List<Supplier<CLP>> factories = new ArrayList<>();
+		for (int k=0; k<n; k++) {
+			long seed = k;
+			factories.add(() -> randomModel(100, 80, seed));
+		}
+		double[] objective = new double[n];
+		for (int k=0; k<n; k++) {
+			CLP clp = factories.get(k).get();
+			clp.solve();
+			objective[k] = clp.getObjectiveValue();
+		}
+		int cores = java.lang.Runtime.getRuntime().availableProcessors();
+		for (int threads=1; threads<=Math.max(2, cores); threads*=2) {
+			try (CLPBatchSolver solver = new CLPBatchSolver(threads)) {
+				CLPBatchResult result = solver.solveFactories(factories);
+				assertEquals(n, result.size());
+				assertArrayEquals(objective, result.getObjectiveValues(), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testSolveAsync() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			CLP clp = randomModel(100, 80, 1);
+			assertEquals(CLP.STATUS.OPTIMAL, clp.solveAsync(executor).get());
+			CLP reference = randomModel(100, 80, 1);
+			reference.solve();
+			assertEquals(reference.getObjectiveValue(), clp.getObjectiveValue(), 1e-8);
+			//cancel before the solve starts
+			List<Runnable> queue = new ArrayList<>();
+			CLP pending = randomModel(100, 80, 1);
+			CompletableFuture<CLP.STATUS> future = pending.solveAsync(queue::add);
+			assertTrue(future.cancel(true));
+			queue.get(0).run();
+			assertTrue(future.isCancelled());
+			assertNull(pending.getBasis());
+			//cancel a running solve
+			Random rnd = new Random(1);
+			//without presolve, the stop reaches the running solve, see solveAsync
+			CLP large = new CLP().maxIterations(1000000).presolve(false);
+			CLPVariable[] x = large.addVariables(800).build();
+			for (CLPVariable v : x)
+				v.obj(-1-rnd.nextDouble());
+			for (int i=0; i<660; i++) {
+				CLPExpression expr = large.createExpression().add(1, x[i]);
+				for (int j=0; j<x.length; j++)
+					if (rnd.nextDouble()<0.05)
+						expr.add(rnd.nextDouble(), x[j]);
+				expr.leq(1+rnd.nextDouble());
+			}
+			CountDownLatch started = new CountDownLatch(1);
+			large.progressListener((iteration, objective, primalInfeasibility, dualInfeasibility) -> {
+				if (iteration > 0 && started.getCount() > 0) {
+					started.countDown();
+					//the solve cannot complete before the cancellation has stopped it
+					boolean stopping = false;
+					while (!stopping) {
+						Thread.yield();
+						synchronized (large._stopLock) {
+							stopping = large._stopping;
+						}
+					}
+				}
+				return true;
+			}, 1);
+			future = large.solveAsync(executor);
+			assertTrue(started.await(60, TimeUnit.SECONDS));
+			assertTrue(future.cancel(true));
+			try {
+				future.get();
+				fail();
+			} catch (CancellationException e) {
+			}
+			assertEquals(1000000, CLP.NATIVE.maximumIterations(large._model));
+			assertNotNull(large.getBasis());
+			assertEquals(3, CLP.NATIVE.Clp_status(large._model));
+			int iterations = large.getNumIterations();
+			assertEquals(CLP.STATUS.OPTIMAL, large.solve());
+			assertTrue(iterations > 0);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testProgressListener() {
+		CLP clp = randomModel(300, 250, 1).maxIterations(100000);
+		List<Integer> iterations = new ArrayList<>();
+		List<Double> objective = new ArrayList<>();
+		clp.progressListener((iteration, obj, primalInf, dualInf) -> {
+			iterations.add(iteration);
+			objective.add(obj);
+			assertTrue(primalInf >= 0 && dualInf >= 0);
+			return true;
+		}, 100);
+		assertEquals(CLP.STATUS.OPTIMAL, clp.solve());
+		assertTrue(iterations.size() > 1);
+		for (int k=1; k<iterations.size(); k++)
+			assertTrue(iterations.get(k) >= iterations.get(k-1)+100);
+		for (double value : objective)
+			assertFalse(Double.isNaN(value) || Double.isInfinite(value));
+		assertEquals(0, CLP.NATIVE.Clp_logLevel(clp._model));
+		//repeated solves from a slack basis, also after the native model has been rebuilt
+		CLP twice = randomModel(300, 250, 1).presolve(false).algorithm(CLP.ALGORITHM.PRIMAL);
+		int[] calls = new int[1];
+		twice.progressListener((iteration, obj, primalInf, dualInf) -> ++calls[0] > 0, 1);
+		byte[] slack = new byte[300+250];
+		Arrays.fill(slack, 0, 300, (byte) CLPBasis.STATUS.AT_LOWER.ordinal());
+		Arrays.fill(slack, 300, 550, (byte) CLPBasis.STATUS.BASIC.ordinal());
+		for (int k=0; k<3; k++) {
+			if (k == 2)
+				twice.reset();
+			calls[0] = 0;
+			twice.setBasis(new CLPBasis(300, 250, slack, null, null));
+			assertEquals(CLP.STATUS.OPTIMAL, twice.solve());
+			assertTrue(calls[0] > 0);
+			assertEquals(clp.getObjectiveValue(), twice.getObjectiveValue(), 1e-8);
+		}
+		//stop early
+		CLP stopped = randomModel(300, 250, 1).maxIterations(100000).presolve(false);
+		stopped.progressListener((iteration, obj, primalInf, dualInf) -> iteration < 100, 1);
+		assertEquals(CLP.STATUS.LIMIT, stopped.solve());
+		assertTrue(stopped.getNumIterations() < 200);
+		assertEquals(100000, CLP.NATIVE.maximumIterations(stopped._model));
+		assertEquals(CLP.STATUS.OPTIMAL, stopped.progressListener(null, 1).solve());
+		assertEquals(clp.getObjectiveValue(), stopped.getObjectiveValue(), 1e-8);
+		//exceptions of the listener are rethrown by solve
+		CLP failing = randomModel(300, 250, 1).presolve(false);
+		failing.progressListener((iteration, obj, primalInf, dualInf) -> {
+			throw new IllegalStateException("stalled");
+		}, 1);
+		try {
+			failing.solve();
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("stalled", e.getMessage());
+		}
+		assertEquals(CLP.STATUS.OPTIMAL, failing.progressListener(null, 1).solve());
+	}
+
+	@Test
+	public void testSolveRacing() {
+		CLP reference = randomModel(300, 250, 1);
+		reference.solve();
+		CLP clp = randomModel(300, 250, 1);
+		CLPSolverConfig[] configs = {
+				new CLPSolverConfig().algorithm(CLP.ALGORITHM.DUAL),
+				new CLPSolverConfig().algorithm(CLP.ALGORITHM.PRIMAL).scaling(CLP.SCALING.AUTO),
+				new CLPSolverConfig().algorithm(CLP.ALGORITHM.BARRIER).presolve(false)};
+		assertEquals(CLP.STATUS.OPTIMAL, clp.solveRacing(configs));
+		assertTrue(Arrays.asList(configs).contains(clp.getRaceWinner()));
+		//the stopped solves have returned
+		for (Thread thread : Thread.getAllStackTraces().keySet())
+			assertFalse(thread.getName().startsWith("clp-race-"));
+		assertEquals(reference.getObjectiveValue(), clp.getObjectiveValue(), 1e-6);
+		double[] primal = clp.getPrimal(new double[300]);
+		double[] activity = clp.getRowActivity(new double[250]);
+		DoubleBuffer obj = reference.getObjectiveView();
+		DoubleBuffer rhs = reference.getConstraintUpperView();
+		double objective = 0;
+		for (int j=0; j<300; j++)
+			objective += obj.get(j)*primal[j];
+		assertEquals(reference.getObjectiveValue(), objective, 1e-6);
+		for (int i=0; i<250; i++)
+			assertTrue(activity[i] <= rhs.get(i)+1e-6);
+		double[] duals = clp.getDuals(new double[250]);
+		double dualObjective = 0;
+		for (int i=0; i<250; i++)
+			dualObjective += duals[i]*rhs.get(i);
+		assertEquals(reference.getObjectiveValue(), dualObjective, 1e-6);
+		//the copied basis is optimal, so a resolve needs no iterations
+		assertEquals(CLP.STATUS.OPTIMAL, clp.solve());
+		assertEquals(0, clp.getNumIterations());
+		assertEquals(reference.getObjectiveValue(), clp.getObjectiveValue(), 1e-6);
+		//the winner can be reused
+		CLP next = randomModel(300, 250, 1).config(clp.getRaceWinner());
+		assertEquals(CLP.STATUS.OPTIMAL, next.solve());
+		assertEquals(reference.getObjectiveValue(), next.getObjectiveValue(), 1e-6);
+		//after a change of bounds, copies racing different algorithms solve from scratch instead of resolving with the dual simplex
+		clp.setVariableBounds(new CLPVariable(clp, 0), 0, 0.5);
+		assertEquals(CLP.STATUS.OPTIMAL, clp.solveRacing(configs[0], configs[1]));
+		assertSame(CLP.ALGORITHM.AUTO, clp._lastAlgorithm);
+		clp.setVariableBounds(new CLPVariable(clp, 0), 0, 0.25);
+		assertEquals(CLP.STATUS.OPTIMAL, clp.solveRacing(configs[0], new CLPSolverConfig().algorithm(CLP.ALGORITHM.DUAL).presolve(false)));
+		assertSame(CLP.ALGORITHM.DUAL, clp._lastAlgorithm);
+	}
+
+	@Test
+	public void testAutotuner() throws Exception {
+		File dir = Files.createTempDirectory("profiles").toFile();
+		try {
+			List<CLPSolverConfig> space = Arrays.asList(
+					new CLPSolverConfig().algorithm(CLP.ALGORITHM.DUAL),
+					new CLPSolverConfig().algorithm(CLP.ALGORITHM.PRIMAL).presolve(false),
+					new CLPSolverConfig().algorithm(CLP.ALGORITHM.DUAL).disable(CLPSolverConfig.PRESOLVE.DUPCOL, CLPSolverConfig.PRESOLVE.DUPROW));
+			CLPAutotuner tuner = new CLPAutotuner(dir).searchSpace(space).repetitions(1).timeLimit(10);
+			CLP model = randomModel(200, 150, 1);
+			CLPSolverConfig best = tuner.tune(model);
+			assertTrue(space.contains(best));
+			assertEquals(3, tuner.getTimes().length);
+			assertEquals(1, tuner.size());
+			assertEquals(1, dir.listFiles().length);
+			//tuning leaves the model unchanged
+			assertEquals(null, model._config);
+			//profiles persist and are applied automatically to models of the same family
+			tuner = new CLPAutotuner(dir);
+			assertEquals(best, tuner.get(randomModel(200, 150, 1)));
+			assertEquals(null, tuner.get(randomModel(200, 150, 2)));
+			CLP clp = randomModel(200, 150, 1).autotuner(tuner);
+			assertEquals(CLP.STATUS.OPTIMAL, clp.solve());
+			assertEquals(best, clp._config);
+			//presolve turns singleton rows into bounds and solves the model without iterations, unless switched off
+			for (CLP.ALGORITHM algorithm : new CLP.ALGORITHM[]{CLP.ALGORITHM.AUTO, CLP.ALGORITHM.DUAL, CLP.ALGORITHM.PRIMAL}) {
+				CLP presolved = singletonRows(50).config(new CLPSolverConfig().algorithm(algorithm));
+				assertEquals(CLP.STATUS.OPTIMAL, presolved.solve());
+				assertEquals(0, presolved.getNumIterations());
+				CLP disabled = singletonRows(50).config(new CLPSolverConfig().algorithm(algorithm).disable(CLPSolverConfig.PRESOLVE.SINGLETON));
+				assertEquals(CLP.STATUS.OPTIMAL, disabled.solve());
+				assertTrue(disabled.getNumIterations() > 0);
+				assertEquals(presolved.getObjectiveValue(), disabled.getObjectiveValue(), 1e-8);
+			}
+		} finally {
+			for (File f : dir.listFiles())
+				f.delete();
+			dir.delete();
+		}
+	}
+
+	@Test
+	public void testSweep() throws Exception {
+		int numScenarios = 40;
+		int[] rows = {0, 5, 10, 15, 20, 25, 30, 35};
+		Random rnd = new Random(1);
+		double[][] values = new double[rows.length+1][numScenarios];
+		for (int s=0; s<numScenarios; s++) {
+			for (int p=0; p<rows.length; p++)
+				values[p][s] = 0.5+rnd.nextDouble();
+			values[rows.length][s] = 0.1*rnd.nextDouble();
+		}
+		//an infeasible scenario, after which the next one is not resolved from its basis
+		values[0][7] = -1;
+		CLP model = randomModel(200, 150, 1);
+		CLPSweep sweep = new CLPSweep(model).rhs(rows).variableUpperBounds(3).threads(2).storePrimal(true).storeDual(true);
+		assertEquals(rows.length+1, sweep.getNumParameters());
+		CLPBatchResult result = sweep.solve(values);
+		int[] order = sweep.getOrder().clone();
+		Arrays.sort(order);
+		for (int s=0; s<numScenarios; s++)
+			assertEquals(s, order[s]);
+		int coldIterations = 0;
+		int sweepIterations = 0;
+		for (int s=0; s<numScenarios; s++) {
+			CLP cold = randomModel(200, 150, 1);
+			for (int p=0; p<rows.length; p++)
+				cold.setConstraintUpperBound(cold.getConstraint(rows[p]), values[p][s]);
+			cold.getVariableUpperView().put(3, values[rows.length][s]);
+			assertEquals(cold.solve(), result.getStatus()[s]);
+			if (s == 7) {
+				assertSame(CLP.STATUS.INFEASIBLE, result.getStatus()[s]);
+				continue;
+			}
+			assertEquals(cold.getObjectiveValue(), result.getObjectiveValues()[s], 1e-6);
+			DoubleBuffer obj = cold.getObjectiveView();
+			double objective = 0;
+			for (int j=0; j<200; j++)
+				objective += obj.get(j)*result.getPrimal()[s][j];
+			assertEquals(cold.getObjectiveValue(), objective, 1e-6);
+			assertEquals(150, result.getDuals()[s].length);
+			coldIterations += cold.getNumIterations();
+			sweepIterations += result.getIterations()[s];
+		}
+		assertTrue(sweepIterations < coldIterations);
+		//the model itself is unchanged
+		assertEquals(0, model.getNumIterations());
+		//scenarios from a memory-mapped file
+		File file = File.createTempFile("sweep", ".bin");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+				for (double[] column : values)
+					for (double value : column)
+						out.writeDouble(value);
+			}
+			CLP.ALGORITHM algorithm = model._algorithm;
+			CLPBatchResult mapped = sweep.threads(1).order(false).solve(file);
+			assertEquals(numScenarios, mapped.size());
+			for (int s=0; s<numScenarios; s++) {
+				assertSame(result.getStatus()[s], mapped.getStatus()[s]);
+				if (s != 7)
+					assertEquals(result.getObjectiveValues()[s], mapped.getObjectiveValues()[s], 1e-6);
+			}
+			//a single thread solves on the model itself and restores its bounds and algorithm
+			assertTrue(model.getNumIterations() > 0);
+			CLP original = randomModel(200, 150, 1);
+			for (int i=0; i<150; i++)
+				assertEquals(original.getConstraintUpperView().get(i), model.getConstraintUpperView().get(i), 0);
+			assertEquals(Double.POSITIVE_INFINITY, model.getVariableUpperView().get(3), 0);
+			assertSame(algorithm, model._algorithm);
+			//columns mapped in several blocks
+			try (FileChannel channel = FileChannel.open(file.toPath())) {
+				CLPSweep.Scenarios blocks = CLPSweep.map(channel, values.length, numScenarios, 4);
+				for (int p=0; p<values.length; p++)
+					for (int s=0; s<numScenarios; s++)
+						assertEquals(values[p][s], blocks.get(p, s), 0);
+			}
+		} finally {
+			file.delete();
+		}
+		//a failing worker stops the others
+		AtomicInteger reads = new AtomicInteger();
+		try {
+			sweep.threads(2).order(false).solve(2*numScenarios, (p, s) -> {
+				if (s == 0)
+					throw new IllegalStateException("failed");
+				reads.incrementAndGet();
+				return values[p][s % numScenarios];
+			});
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("failed", e.getMessage());
+		}
+		assertTrue(reads.get() < numScenarios*values.length);
+		try {
+			sweep.solve(new double[][]{values[0]});
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
 }